@@ -0,0 +1,122 @@
+package mmac;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Benchmarks of the hot paths of MMACSolver on one instance of each family.
+ * The solver is seeded with SEED, so every fork starts from the same random layering.
+ * Run from the repository root (or set -Dmmac.instances to it):
+ *
+ *   java -jar bench/target/benchmarks.jar
+ *
+ * localSearchIteration is the allocation check of the local search, run it with the GC profiler
+ *
+ *   java -jar bench/target/benchmarks.jar localSearchIteration -prof gc
+ *
+ * gc.alloc.rate.norm must stay at (about) 0 B/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolverBenchmark {
+
+    static final int SEED = 0;
+    static final int MOVE_DISTANCE = 10;
+
+    @Param({"Rome/rome.49.62.58.txt",
+            "North/north.40.131.15.txt",
+            "uniform/noug5-rnd-001.txt",
+            "connected/c1000_5000_25_2_1.txt"})
+    public String instance;
+
+    private MMACSolver solver;
+    private int node;
+    private int nextNode;
+    private int pos;
+    private int currM;
+    private MMACSolver.Move forward;
+    private MMACSolver.Move backward;
+    private MMACSolver.Move undo;
+
+    static String resolve(String instance) {
+        return System.getProperty("mmac.instances", ".") + File.separator + instance;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        solver = new MMACSolver(resolve(instance), SEED);
+        solver.setVERBOSE(false);
+        solver.init();
+        currM = solver.nodeMaxCross[solver.allNodes[0]];
+
+        // the most crossed node that has a right neighbour
+        for (int n : solver.allNodes) {
+            int[] layer = solver.layers[solver.nodeLayer[n]];
+            if (solver.nodePos[n] < layer.length - 1) {
+                node = n;
+                pos = solver.nodePos[n];
+                nextNode = layer[pos + 1];
+                forward = solver.new Move(n, Math.min(pos + MOVE_DISTANCE, layer.length - 1), 0);
+                backward = solver.new Move(n, pos, 0);
+                break;
+            }
+        }
+        undo = solver.new Move(-1, -1, 0);
+    }
+
+    @Benchmark
+    public Object findMove() {
+        return solver.findMove();
+    }
+
+    @Benchmark
+    public int calcSwapDelta() {
+        int[] layer = solver.layers[solver.nodeLayer[node]];
+        solver.evaluator.resetTmpCross(layer, pos, pos + 1);
+        return solver.evaluator.calcSwapDelta(node, nextNode, pos, pos + 1, pos + 1, pos, currM);
+    }
+
+    /***
+     * Move the node MOVE_DISTANCE positions right and back, so the layering is unchanged
+     */
+    @Benchmark
+    public void makeMove(Blackhole bh) {
+        solver.makeMove(forward);
+        solver.makeMove(backward);
+        bh.consume(solver.nodeMaxCross[solver.allNodes[0]]);
+    }
+
+    /***
+     * One local search step: find the best move, make it, then undo it so the layering is unchanged
+     */
+    @Benchmark
+    public void localSearchIteration(Blackhole bh) {
+        MMACSolver.Move mv = solver.findMove();
+        if (mv.node >= 0) {
+            undo.set(mv.node, solver.nodePos[mv.node], 0);
+            solver.makeMove(mv);
+            bh.consume(solver.nodeMaxCross[solver.allNodes[0]]);
+            solver.makeMove(undo);
+        }
+    }
+
+    @Benchmark
+    public void initM(Blackhole bh) {
+        solver.initM();
+        bh.consume(solver.nodeMaxCross[solver.allNodes[0]]);
+    }
+
+    @Benchmark
+    public void randomShufflePerturb(Blackhole bh) {
+        solver.randomShufflePerturb(0.1f);
+        bh.consume(solver.nodeMaxCross[solver.allNodes[0]]);
+    }
+}
@@ -1,10 +1,20 @@
+import mmac.BatchDriver;
+import mmac.CooperativeSolver;
+import mmac.Instance;
 import mmac.MMACSolver;
+import mmac.MultiStartRunner;
+import mmac.ParameterTuner;
+import mmac.ResultsWriter;
+import mmac.SolverOptions;
+import mmac.SolverService;
 
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
 
 public class Main {
 
@@ -302,43 +312,311 @@ public class Main {
     public static void main(String[] args) throws IOException {
 	// write your code here
 
+        if (args.length > 0 && args[0].equals("--serve")) {
+            serve(args);
+            return;
+        }
+        if (args.length > 1 && args[0].equals("--batch")) {
+            batch(args);
+            return;
+        }
+        if (args.length > 1 && args[0].equals("--tune")) {
+            tune(args);
+            return;
+        }
+
         String instance = args[0];
         double time_limit = Integer.parseInt(args[1]);
         int run_time = Integer.parseInt(args[2]);
         float p_denominator = Float.parseFloat(args[3]);
         float perturb_str = Float.parseFloat(args[4]);
+        // optional: the number of threads (0 means one per available core),
+        // "coop" to make every run one cooperative search with threads workers,
+        // name=value stopping criteria, log=<seconds> between two progress lines (0 for none)
+        // "jmx" to expose the metrics of the running solvers as MBeans, "cache" to use the move-delta cache,
+        // "critical" to only move the endpoints of the critical edges, "vnd" to add the block-move neighbourhood,
+        // "adaptive" to tune the move distance and the perturbation strength during the runs,
+        // eval=<n> to evaluate the moves of every local search iteration on n threads,
+        // results=<file.csv|file.jsonl> to write one row per run and solutions=<dir> (plus "gzip") to keep the solutions,
+        // init=<solution file> to start every run from the layering of a solution file written with solutions=
+        int threads = 1;
+        boolean cooperative = false;
+        double log_interval = 1;
+        String init_file = null;
+        String results_file = null;
+        String solution_dir = null;
+        boolean gzip = false;
+        SolverOptions options = new SolverOptions();
+        options.setTIME_LIMIT(time_limit);
+        options.setMAX_MOVE_DISTANCE_DENOMINATOR(p_denominator);
+        options.setPERTURB_STRENGTH(perturb_str);
+        for (int i = 5; i < args.length; ++i) {
+            if (args[i].equals("coop")) {
+                cooperative = true;
+            } else if (args[i].startsWith("iterations=")) {
+                options.setMAX_ITERATIONS(Integer.parseInt(args[i].substring("iterations=".length())));
+            } else if (args[i].startsWith("evaluations=")) {
+                options.setMAX_EVALUATIONS(Long.parseLong(args[i].substring("evaluations=".length())));
+            } else if (args[i].startsWith("target=")) {
+                options.setTARGET_M(Integer.parseInt(args[i].substring("target=".length())));
+            } else if (args[i].startsWith("stagnation=")) {
+                options.setMAX_STAGNATION(Integer.parseInt(args[i].substring("stagnation=".length())));
+            } else if (args[i].startsWith("eval=")) {
+                options.setEVAL_THREADS(Integer.parseInt(args[i].substring("eval=".length())));
+            } else if (args[i].startsWith("log=")) {
+                log_interval = Double.parseDouble(args[i].substring("log=".length()));
+            } else if (args[i].equals("jmx")) {
+                options.setJMX(true);
+            } else if (args[i].equals("cache")) {
+                options.setMOVE_CACHE(true);
+            } else if (args[i].equals("critical")) {
+                options.setCRITICAL_ONLY(true);
+            } else if (args[i].equals("vnd")) {
+                options.setVND(true);
+            } else if (args[i].equals("adaptive")) {
+                options.setADAPTIVE(true);
+            } else if (args[i].startsWith("init=")) {
+                init_file = args[i].substring("init=".length());
+            } else if (args[i].startsWith("results=")) {
+                results_file = args[i].substring("results=".length());
+            } else if (args[i].startsWith("solutions=")) {
+                solution_dir = args[i].substring("solutions=".length());
+            } else if (args[i].equals("gzip")) {
+                gzip = true;
+            } else if (args[i].matches("\\d+")) {
+                threads = Integer.parseInt(args[i]);
+            } else {
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        options.setLOG_INTERVAL(log_interval);
+
+        ResultsWriter results = null;
+        if (results_file != null || solution_dir != null) {
+            results = results_file != null ? new ResultsWriter(results_file) : new ResultsWriter();
+            if (solution_dir != null) {
+                new File(solution_dir).mkdirs();
+                results.setSolutionDir(solution_dir, gzip);
+            }
+        }
+
+        // loaded once and shared by all the runs
+        Instance inst = Instance.load(instance);
+        if (init_file != null) {
+            options.setInitialLayers(ResultsWriter.readLayers(init_file));
+        }
+        ArrayList<MMACSolver.Solution> sols;
+        if (cooperative) {
+            sols = new ArrayList<>();
+            for (int i = 0; i < run_time; ++i) {
+                System.out.println(instance + "\t run " + i);
+                CooperativeSolver solver = new CooperativeSolver(inst, threads, i);
+                solver.setOptions(options);
+                solver.setVERBOSE(log_interval > 0);
+                MMACSolver.Solution solution = solver.solve();
+                if (results != null) {
+                    results.write(instance, i, solution);
+                }
+                sols.add(solution);
+            }
+        } else {
+            MultiStartRunner runner = new MultiStartRunner(threads);
+            runner.setOptions(options);
+            runner.setResultsWriter(results);
+            sols = runner.run(inst, run_time);
+        }
 
-        String resFile = "resTotal.csv";
-        BufferedWriter bf = new BufferedWriter(new FileWriter(resFile, true));
+        if (results != null) {
+            results.close();
+        }
+
+        BufferedWriter bf = new BufferedWriter(new FileWriter("resTotal.csv", true));
         bf.write("\ninstance");
         for(int i=0; i<run_time; ++i){
             bf.write(", " + i);
         }
         bf.write(", best\n" + instance + ",");
-        bf.close();
-
-        ArrayList<MMACSolver.Solution> sols = new ArrayList<>();
-        for (int i = 0; i < run_time; ++i) {
-            System.out.println(instance + "\t run " + i);
-            MMACSolver solver = new MMACSolver(instance, i);
-            solver.setTIME_LIMIT(time_limit);
-            solver.setMAX_MOVE_DISTANCE_DENOMINATOR(p_denominator);
-            solver.setPERTURB_STRENGTH(perturb_str);
-            solver.solve();
-            MMACSolver.Solution solution = solver.getBestSol();
-            sols.add(solution);
-
-            bf = new BufferedWriter(new FileWriter(resFile, true));
+        for (MMACSolver.Solution solution : sols) {
             bf.write(String.valueOf(solution.getM()));
             bf.write(",");
-            bf.close();
             //solution.write(i);
         }
 
         MMACSolver.Solution bestSol = sols.stream().min(Comparator.comparing(MMACSolver.Solution::getM)).get();
-        bf = new BufferedWriter(new FileWriter(resFile, true));
         bf.write(String.valueOf(bestSol.getM()));
         bf.write("\n");
         bf.close();
     }
+
+    /***
+     * --serve [port=<port>] [workers=<n>] [queue=<n>]: serve solve requests from stdin,
+     * or from the given local port, see SolverService
+     */
+    private static void serve(String[] args) throws IOException {
+        int port = -1;
+        int workers = 0;
+        int queue = 64;
+        for (int i = 1; i < args.length; ++i) {
+            if (args[i].startsWith("port=")) {
+                port = Integer.parseInt(args[i].substring("port=".length()));
+            } else if (args[i].startsWith("workers=")) {
+                workers = Integer.parseInt(args[i].substring("workers=".length()));
+            } else if (args[i].startsWith("queue=")) {
+                queue = Integer.parseInt(args[i].substring("queue=".length()));
+            } else {
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        SolverService service = new SolverService(workers, queue);
+        if (port >= 0) {
+            service.serveSocket(port);
+        } else {
+            service.serveStdin();
+        }
+    }
+
+    /***
+     * --tune &lt;uniform|connected|north|rome|glob&gt; [time=] [threads=] [seed=] [blocks=] [alpha=]
+     * [pden=&lt;d1,d2,...&gt;] [perturb=&lt;s1,s2,...&gt;] [iterations=] [evaluations=] [out=]:
+     * race the parameter configurations on the instances and write the best one of every family
+     */
+    private static void tune(String[] args) throws IOException {
+        List<String> instances = suite(args[1]);
+        int threads = 0;
+        String out_file = "tuning.csv";
+        ArrayList<String> settings = new ArrayList<>();
+        for (int i = 2; i < args.length; ++i) {
+            String[] kv = args[i].split("=", 2);
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+            if (kv[0].equals("threads")) {
+                threads = Integer.parseInt(kv[1]);
+            } else {
+                settings.add(args[i]);
+            }
+        }
+        ParameterTuner tuner = new ParameterTuner(threads);
+        SolverOptions options = new SolverOptions();
+        options.setTIME_LIMIT(10);
+        for (String setting : settings) {
+            String[] kv = setting.split("=", 2);
+            switch (kv[0]) {
+                case "seed": tuner.setFIRST_SEED(Integer.parseInt(kv[1])); break;
+                case "blocks": tuner.setMAX_BLOCKS(Integer.parseInt(kv[1])); break;
+                case "alpha": tuner.setALPHA(Double.parseDouble(kv[1])); break;
+                case "pden": tuner.setDENOMINATORS(parseFloats(kv[1])); break;
+                case "perturb": tuner.setSTRENGTHS(parseFloats(kv[1])); break;
+                case "out": out_file = kv[1]; break;
+                default:
+                    if (!setOption(options, kv[0], kv[1])) {
+                        throw new IllegalArgumentException("Unknown option " + setting);
+                    }
+            }
+        }
+        tuner.setOptions(options);
+        ParameterTuner.writeResults(tuner.run(instances), out_file);
+    }
+
+    /***
+     * Set the solver option of a name=value setting of --batch or --tune
+     * @return false if name is not a solver option
+     */
+    private static boolean setOption(SolverOptions options, String name, String value) {
+        switch (name) {
+            case "time": options.setTIME_LIMIT(Double.parseDouble(value)); return true;
+            case "pden": options.setMAX_MOVE_DISTANCE_DENOMINATOR(Float.parseFloat(value)); return true;
+            case "perturb": options.setPERTURB_STRENGTH(Float.parseFloat(value)); return true;
+            case "iterations": options.setMAX_ITERATIONS(Integer.parseInt(value)); return true;
+            case "evaluations": options.setMAX_EVALUATIONS(Long.parseLong(value)); return true;
+            case "target": options.setTARGET_M(Integer.parseInt(value)); return true;
+            case "stagnation": options.setMAX_STAGNATION(Integer.parseInt(value)); return true;
+            case "cache": options.setMOVE_CACHE(Boolean.parseBoolean(value)); return true;
+            case "critical": options.setCRITICAL_ONLY(Boolean.parseBoolean(value)); return true;
+            case "vnd": options.setVND(Boolean.parseBoolean(value)); return true;
+            case "adaptive": options.setADAPTIVE(Boolean.parseBoolean(value)); return true;
+            case "eval": options.setEVAL_THREADS(Integer.parseInt(value)); return true;
+            default: return false;
+        }
+    }
+
+    private static float[] parseFloats(String list) {
+        String[] parts = list.split(",");
+        float[] values = new float[parts.length];
+        for (int i = 0; i < parts.length; ++i) {
+            values[i] = Float.parseFloat(parts[i].trim());
+        }
+        return values;
+    }
+
+    /***
+     * The instances of a built-in suite, or the instance files matching a glob
+     */
+    private static List<String> suite(String name) throws IOException {
+        List<String> instances;
+        switch (name) {
+            case "uniform": instances = testUniform(); break;
+            case "connected": instances = testConnected(); break;
+            case "north": instances = testNorth(); break;
+            case "rome": instances = testRome(); break;
+            default: instances = BatchDriver.expandGlob(name);
+        }
+        if (instances.isEmpty()) {
+            throw new IllegalArgumentException("No instance matches " + name);
+        }
+        return instances;
+    }
+
+    /***
+     * --batch &lt;uniform|connected|north|rome|glob&gt; [time=] [runs=] [seed=] [threads=] [pden=] [perturb=]
+     * [iterations=] [evaluations=] [target=] [stagnation=] [cache=true] [critical=true] [vnd=true] [adaptive=true] [eval=] [results=] [report=]:
+     * run a built-in suite or the instance files matching a glob and report the results per instance
+     */
+    private static void batch(String[] args) throws IOException {
+        List<String> instances = suite(args[1]);
+        int threads = 0;
+        String results_file = null;
+        String report_file = null;
+        ArrayList<String> settings = new ArrayList<>();
+        for (int i = 2; i < args.length; ++i) {
+            String[] kv = args[i].split("=", 2);
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+            if (kv[0].equals("threads")) {
+                threads = Integer.parseInt(kv[1]);
+            } else {
+                settings.add(args[i]);
+            }
+        }
+        BatchDriver driver = new BatchDriver(threads);
+        SolverOptions options = new SolverOptions();
+        for (String setting : settings) {
+            String[] kv = setting.split("=", 2);
+            switch (kv[0]) {
+                case "runs": driver.setRUNS(Integer.parseInt(kv[1])); break;
+                case "seed": driver.setFIRST_SEED(Integer.parseInt(kv[1])); break;
+                case "results": results_file = kv[1]; break;
+                case "report": report_file = kv[1]; break;
+                default:
+                    if (!setOption(options, kv[0], kv[1])) {
+                        throw new IllegalArgumentException("Unknown option " + setting);
+                    }
+            }
+        }
+        driver.setOptions(options);
+
+        ResultsWriter results = results_file != null ? new ResultsWriter(results_file) : null;
+        driver.setResultsWriter(results);
+        try {
+            List<BatchDriver.InstanceReport> reports = driver.run(instances);
+            if (report_file != null) {
+                BatchDriver.writeReport(reports, report_file);
+            }
+        } finally {
+            if (results != null) {
+                results.close();
+            }
+        }
+    }
 }
@@ -0,0 +1,143 @@
+package mmac;
+
+import java.util.Locale;
+import java.util.Random;
+
+/***
+ * Tunes the move distance of the local search and the perturbation strength of one run online,
+ * see MMACSolver.setADAPTIVE.
+ *
+ * Every perturbation and the local search that follows are a cycle, and a cycle succeeds when its local
+ * optimum is at least as good as the best solution of the run (with the same score, or a new best).
+ * The distance is chosen among DISTANCE_LEVELS fractions of the configured MAX_MOVE_DISTANCE and the
+ * strength among STRENGTH_LEVELS multiples of the configured PERTURB_STRENGTH, each epsilon-greedily on
+ * its rate of successes per second of cycle (an exponential average of its last cycles).
+ * A short distance makes every iteration cheaper and a long one finds the moves a short one misses;
+ * a weak perturbation stays close to the best solutions and a strong one escapes their basin;
+ * the rates weigh both on the instance at hand, from the measured time of the cycles.
+ */
+class AdaptiveController {
+
+    private static final float[] DISTANCE_LEVELS = {1f, 0.5f, 0.25f};
+    private static final float[] STRENGTH_LEVELS = {1f, 0.5f, 1.5f, 2f};
+    private static final double EPSILON = 0.1;
+    private static final double ALPHA = 0.1;
+
+    private final int[] distances;
+    private final float[] strengths;
+    // the average rate of every level, valid once its number of tries is positive
+    private final double[] distanceRates;
+    private final int[] distanceTries;
+    private final double[] strengthRates;
+    private final int[] strengthTries;
+    private final Random random;
+    private final long logIntervalNanos;
+
+    private int distance = 0;
+    private int strength = 0;
+    private int greedyDistance = 0;
+    private int greedyStrength = 0;
+    private long bestScore;
+    private long startNanos;
+    private boolean changed = false;
+    private long nextLogNanos;
+
+    /***
+     * @param maxDistance the configured MAX_MOVE_DISTANCE, the largest distance tried
+     * @param baseStrength the configured PERTURB_STRENGTH
+     * @param bestScore the score of the best solution so far, see MMACSolver.score
+     * @param random the Random of the solver, so the choices follow its seed
+     * @param logInterval the minimum time in seconds between two lines reporting the decisions, 0 for none
+     */
+    AdaptiveController(int maxDistance, float baseStrength, long bestScore, Random random, double logInterval) {
+        distances = new int[DISTANCE_LEVELS.length];
+        for (int i = 0; i < distances.length; ++i) {
+            distances[i] = Math.max(1, Math.round(maxDistance * DISTANCE_LEVELS[i]));
+        }
+        strengths = new float[STRENGTH_LEVELS.length];
+        for (int i = 0; i < strengths.length; ++i) {
+            strengths[i] = Math.min(0.9f, baseStrength * STRENGTH_LEVELS[i]);
+        }
+        distanceRates = new double[distances.length];
+        distanceTries = new int[distances.length];
+        strengthRates = new double[strengths.length];
+        strengthTries = new int[strengths.length];
+        this.bestScore = bestScore;
+        this.random = random;
+        logIntervalNanos = (long) (logInterval * 1e9);
+        nextLogNanos = System.nanoTime();
+    }
+
+    int distance() {
+        return distances[distance];
+    }
+
+    float strength() {
+        return strengths[strength];
+    }
+
+    /***
+     * Choose the strength of the perturbation and the distance of the local search of the next cycle
+     */
+    void beforePerturbation() {
+        startNanos = System.nanoTime();
+        int d = greedy(distanceRates, distanceTries);
+        int s = greedy(strengthRates, strengthTries);
+        if (d != greedyDistance || s != greedyStrength) {
+            greedyDistance = d;
+            greedyStrength = s;
+            changed = true;
+        }
+        distance = choose(d, distanceTries);
+        strength = choose(s, strengthTries);
+    }
+
+    /***
+     * Credit the choices of the cycle that just ended with its local optimum
+     * @param score the score of the local optimum
+     */
+    void afterLocalSearch(long score) {
+        long now = System.nanoTime();
+        double seconds = Math.max(1e-6, (now - startNanos) / 1e9);
+        double rate = (score <= bestScore ? 1 : 0) / seconds;
+        if (score < bestScore) bestScore = score;
+        distanceRates[distance] = credit(distanceRates[distance], distanceTries[distance]++, rate);
+        strengthRates[strength] = credit(strengthRates[strength], strengthTries[strength]++, rate);
+
+        if (changed && logIntervalNanos > 0 && now - nextLogNanos >= 0) {
+            nextLogNanos = now + logIntervalNanos;
+            changed = false;
+            StringBuilder sb = new StringBuilder("Adaptive: move distance ").append(distances[greedyDistance])
+                    .append(" (successes/s");
+            for (int i = 0; i < distances.length; ++i) {
+                sb.append(String.format(Locale.ROOT, " %d:%.1f", distances[i], distanceRates[i]));
+            }
+            sb.append(String.format(Locale.ROOT, "), perturbation strength %.3f (successes/s", strengths[greedyStrength]));
+            for (int i = 0; i < strengths.length; ++i) {
+                sb.append(String.format(Locale.ROOT, " %.3f:%.1f", strengths[i], strengthRates[i]));
+            }
+            System.out.println(sb.append(')'));
+        }
+    }
+
+    private static double credit(double average, int tries, double rate) {
+        return tries == 0 ? rate : (1 - ALPHA) * average + ALPHA * rate;
+    }
+
+    /***
+     * @return the first level never tried, or the level with the best rate
+     */
+    private static int greedy(double[] rates, int[] tries) {
+        int best = 0;
+        for (int i = 0; i < rates.length; ++i) {
+            if (tries[i] == 0) return i;
+            if (rates[i] > rates[best]) best = i;
+        }
+        return best;
+    }
+
+    private int choose(int greedy, int[] tries) {
+        if (tries[greedy] == 0 || random.nextDouble() >= EPSILON) return greedy;
+        return random.nextInt(tries.length);
+    }
+}
@@ -0,0 +1,233 @@
+package mmac;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/***
+ * Runs every instance of a list several times on one thread pool and reports, per instance,
+ * the best and average M, its standard deviation, the average time to the best solution of a run
+ * and the number of local search iterations per second.
+ * The runs of all the instances share the pool, so several instances are solved in parallel;
+ * run r of an instance uses seed FIRST_SEED + r whatever the number of threads,
+ * and every instance is loaded only once.
+ */
+public class BatchDriver {
+
+    private final int threads;
+    private int RUNS = 10;
+    private int FIRST_SEED = 0;
+    private SolverOptions options = new SolverOptions();
+    private ResultsWriter results;
+
+    /***
+     * The aggregated results of the runs of one instance
+     */
+    public static class InstanceReport {
+        private final String instance;
+        private final int runs;
+        private final int best;
+        private final double average;
+        private final double stdDev;
+        private final double averageTimeToBest;
+        private final double iterationsPerSecond;
+
+        InstanceReport(String instance, List<MMACSolver.Solution> sols, long iterations, double seconds) {
+            this.instance = instance;
+            runs = sols.size();
+            int b = Integer.MAX_VALUE;
+            double sum = 0;
+            double timeSum = 0;
+            for (MMACSolver.Solution sol : sols) {
+                b = Math.min(b, sol.getM());
+                sum += sol.getM();
+                timeSum += sol.getTimeToSol();
+            }
+            best = b;
+            average = sum / runs;
+            double sq = 0;
+            for (MMACSolver.Solution sol : sols) {
+                sq += (sol.getM() - average) * (sol.getM() - average);
+            }
+            stdDev = runs > 1 ? Math.sqrt(sq / (runs - 1)) : 0;
+            averageTimeToBest = timeSum / runs;
+            iterationsPerSecond = seconds > 0 ? iterations / seconds : 0;
+        }
+
+        public String getInstance() { return instance; }
+        public int getRuns() { return runs; }
+        public int getBest() { return best; }
+        public double getAverage() { return average; }
+        /***
+         * @return the sample standard deviation of M over the runs
+         */
+        public double getStdDev() { return stdDev; }
+        public double getAverageTimeToBest() { return averageTimeToBest; }
+        public double getIterationsPerSecond() { return iterationsPerSecond; }
+    }
+
+    /***
+     * @param threads the number of runs solved at the same time (0 means one per available core)
+     */
+    public BatchDriver(int threads) {
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    public void setRUNS(int runs){ RUNS = runs;}
+    public void setFIRST_SEED(int seed){ FIRST_SEED = seed;}
+    /***
+     * The options of every run
+     */
+    public void setOptions(SolverOptions options){ this.options = options;}
+    /***
+     * Also write the result of every run to results as soon as it is finished
+     */
+    public void setResultsWriter(ResultsWriter results){ this.results = results;}
+
+    /***
+     * One run: its solution, its iterations and its duration
+     */
+    private static class RunResult {
+        final MMACSolver.Solution solution;
+        final long iterations;
+        final double seconds;
+
+        RunResult(MMACSolver.Solution solution, long iterations, double seconds) {
+            this.solution = solution;
+            this.iterations = iterations;
+            this.seconds = seconds;
+        }
+    }
+
+    /***
+     * Run all the instances and print one line per instance as soon as all its runs are finished
+     * @return the reports in the order of instances
+     */
+    public List<InstanceReport> run(List<String> instances) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        // set when a run or a load fails or run returns: the runs still going on are cancelled,
+        // and those starting cancel themselves
+        AtomicBoolean stop = new AtomicBoolean();
+        Set<MMACSolver> solvers = ConcurrentHashMap.newKeySet();
+        try {
+            ArrayList<List<Future<RunResult>>> futures = new ArrayList<>(instances.size());
+            for (int i = 0; i < instances.size(); ++i) {
+                Instance instance = Instance.load(instances.get(i));
+                List<Future<RunResult>> runs = new ArrayList<>(RUNS);
+                for (int r = 0; r < RUNS; ++r) {
+                    final int seed = FIRST_SEED + r;
+                    runs.add(pool.submit(() -> {
+                        try {
+                            return runOnce(instance, seed, stop, solvers);
+                        } catch (Throwable t) {
+                            stop.set(true);
+                            solvers.forEach(MMACSolver::cancel);
+                            throw t;
+                        }
+                    }));
+                }
+                futures.add(runs);
+            }
+
+            System.out.println(String.format("%-40s %5s %8s %10s %8s %14s %12s",
+                    "instance", "runs", "best", "average", "std", "time to best", "iter/s"));
+            ArrayList<InstanceReport> reports = new ArrayList<>(instances.size());
+            for (int i = 0; i < instances.size(); ++i) {
+                ArrayList<MMACSolver.Solution> sols = new ArrayList<>(RUNS);
+                long iterations = 0;
+                double seconds = 0;
+                for (Future<RunResult> future : futures.get(i)) {
+                    RunResult result = MultiStartRunner.await(future);
+                    sols.add(result.solution);
+                    iterations += result.iterations;
+                    seconds += result.seconds;
+                }
+                InstanceReport report = new InstanceReport(instances.get(i), sols, iterations, seconds);
+                reports.add(report);
+                System.out.println(String.format(Locale.ROOT, "%-40s %5d %8d %10.2f %8.2f %14.3f %12.0f",
+                        report.instance, report.runs, report.best, report.average, report.stdDev,
+                        report.averageTimeToBest, report.iterationsPerSecond));
+            }
+            return reports;
+        } finally {
+            // also reached when a load fails or the caller is interrupted; no run outlives this call
+            MultiStartRunner.stopAll(stop, solvers, pool);
+        }
+    }
+
+    /***
+     * @param stop when set, the run cancels itself before its solve starts
+     * @param solvers the solvers of the running runs, which this one joins while its solve is running
+     */
+    private RunResult runOnce(Instance instance, int seed, AtomicBoolean stop, Set<MMACSolver> solvers)
+            throws IOException {
+        MMACSolver solver = new MMACSolver(instance, seed);
+        solver.setOptions(options);
+        solver.setVERBOSE(false);
+        solvers.add(solver);
+        if (stop.get()) solver.cancel();
+        try {
+            solver.solve();
+        } finally {
+            solvers.remove(solver);
+        }
+        SolverMetrics metrics = solver.getMetrics();
+        RunResult result = new RunResult(solver.getBestSol(), metrics.getIterations(), metrics.getElapsedSeconds());
+        if (results != null && solver.getStopReason() != MMACSolver.StopReason.CANCELLED) {
+            results.write(instance.getName(), seed, result.solution);
+        }
+        return result;
+    }
+
+    /***
+     * Write the reports as CSV
+     */
+    public static void writeReport(List<InstanceReport> reports, String file) throws IOException {
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(file))) {
+            bw.write("instance,runs,best,average,std,time_to_best,iterations_per_second\n");
+            for (InstanceReport r : reports) {
+                bw.write(String.format(Locale.ROOT, "%s,%d,%d,%.4f,%.4f,%.4f,%.1f\n", r.instance, r.runs, r.best,
+                        r.average, r.stdDev, r.averageTimeToBest, r.iterationsPerSecond));
+            }
+        }
+    }
+
+    /***
+     * The files matching a glob pattern such as "North/north.*.txt" or "uniform/**.txt", sorted by path.
+     * The pattern is matched against the paths relative to its longest directory prefix without wildcards.
+     */
+    public static List<String> expandGlob(String pattern) throws IOException {
+        String[] parts = pattern.split("/");
+        StringBuilder base = new StringBuilder();
+        int first = 0;
+        while (first < parts.length - 1 && !hasWildcard(parts[first])) {
+            base.append(parts[first]).append('/');
+            ++first;
+        }
+        Path dir = Paths.get(base.length() == 0 ? "." : base.toString());
+        String relative = String.join("/", Arrays.copyOfRange(parts, first, parts.length));
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + relative);
+        if (!Files.isDirectory(dir)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.walk(dir, FileVisitOption.FOLLOW_LINKS)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(p -> matcher.matches(dir.relativize(p)))
+                    .map(p -> base.length() == 0 ? dir.relativize(p).toString() : p.toString())
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static boolean hasWildcard(String s) {
+        return s.indexOf('*') >= 0 || s.indexOf('?') >= 0 || s.indexOf('[') >= 0 || s.indexOf('{') >= 0;
+    }
+}
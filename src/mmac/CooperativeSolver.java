@@ -0,0 +1,104 @@
+package mmac;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/***
+ * Cooperative I-VDNS: several MMACSolver workers search the same instance in parallel
+ * and share their best solutions through an ElitePool.
+ * Worker w of a run with seed s uses seed s * workers + w.
+ */
+public class CooperativeSolver {
+
+    private final String instanceFile;
+    private Instance instance;
+    private final int workers;
+    private final int seed;
+    private SolverOptions options = new SolverOptions();
+    private int ELITE_SIZE = 10;
+    private int ELITE_RESTART_STAGNATION = 20;
+    private boolean VERBOSE = true;
+    private final CopyOnWriteArrayList<SolverListener> listeners = new CopyOnWriteArrayList<>();
+
+    public CooperativeSolver(String instanceFile, int workers, int seed) {
+        this.instanceFile = instanceFile;
+        this.workers = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        this.seed = seed;
+    }
+
+    /***
+     * A cooperative search of an already loaded instance, shared by all the workers
+     */
+    public CooperativeSolver(Instance instance, int workers, int seed) {
+        this(instance.getName(), workers, seed);
+        this.instance = instance;
+    }
+
+    /***
+     * The options of every worker
+     */
+    public void setOptions(SolverOptions options){ this.options = options;}
+    public void setELITE_SIZE(int size){ ELITE_SIZE = size;}
+    public void setELITE_RESTART_STAGNATION(int perturbations){ ELITE_RESTART_STAGNATION = perturbations;}
+    public void setVERBOSE(boolean verbose){ VERBOSE = verbose;}
+    /***
+     * Notify listener of the events of every worker, see MMACSolver.addListener;
+     * it is called by the workers concurrently
+     */
+    public void addListener(SolverListener listener){ listeners.add(listener);}
+
+    /***
+     * Run all the workers until the time limit or their other stopping criteria,
+     * or until one of them reaches the target M
+     * @return the best solution found by any worker
+     */
+    public MMACSolver.Solution solve() throws IOException {
+        if (instance == null) {
+            instance = Instance.load(instanceFile);
+        }
+        ElitePool pool = new ElitePool(ELITE_SIZE);
+        pool.setVERBOSE(VERBOSE);
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        // set when a worker fails or solve returns: the workers still going on are cancelled,
+        // and those starting cancel themselves
+        AtomicBoolean stop = new AtomicBoolean();
+        Set<MMACSolver> solvers = ConcurrentHashMap.newKeySet();
+        try {
+            ArrayList<Future<MMACSolver.Solution>> futures = new ArrayList<>(workers);
+            for (int w = 0; w < workers; ++w) {
+                final int worker = w;
+                futures.add(executor.submit(() -> {
+                    MMACSolver solver = new MMACSolver(instance, seed * workers + worker);
+                    solver.setOptions(options);
+                    solver.setELITE_RESTART_STAGNATION(ELITE_RESTART_STAGNATION);
+                    solver.setVERBOSE(false);
+                    solver.setElitePool(pool, worker);
+                    for (SolverListener listener : listeners) {
+                        solver.addListener(listener);
+                    }
+                    solvers.add(solver);
+                    if (stop.get()) solver.cancel();
+                    try {
+                        solver.solve();
+                    } catch (Throwable t) {
+                        stop.set(true);
+                        solvers.forEach(MMACSolver::cancel);
+                        throw t;
+                    }
+                    return solver.getBestSol();
+                }));
+            }
+            for (Future<MMACSolver.Solution> future : futures) {
+                MultiStartRunner.await(future);
+            }
+        } finally {
+            // also reached when the caller is interrupted; no worker outlives this call
+            MultiStartRunner.stopAll(stop, solvers, executor);
+        }
+        return pool.getBest();
+    }
+}
@@ -0,0 +1,79 @@
+package mmac;
+
+import java.util.Arrays;
+
+/***
+ * Counts the crossings of every edge between two consecutive layers in O(E log V)
+ * with two sweeps over the sources and a Fenwick tree over the sink positions.
+ * Edge (i,j) crosses (k,l) iff k < i and l > j, or k > i and l < j,
+ * so the first sweep (ascending i) counts the edges already inserted with a larger sink,
+ * and the second one (descending i) those with a smaller sink.
+ * Edges sharing their source or their sink never cross, the edges of one source are
+ * queried before being inserted and equal sinks are excluded by the strict comparisons.
+ */
+final class CrossingCounter {
+
+    private final int[] outStart;
+    private final int[] outEdge;
+    private final int[] outNode;
+    // Fenwick tree over the sink positions, 1-based
+    private final int[] tree;
+
+    CrossingCounter(int[] outStart, int[] outEdge, int[] outNode, int maxLayerSize) {
+        this.outStart = outStart;
+        this.outEdge = outEdge;
+        this.outNode = outNode;
+        tree = new int[maxLayerSize + 1];
+    }
+
+    /***
+     * Count the crossings of the out edges of a layer
+     * @param layer the nodes of the layer sorted by position
+     * @param nodePos the position of every node
+     * @param cross the crossings of every edge id, set for the out edges of the layer
+     */
+    void count(int[] layer, int[] nodePos, int[] cross) {
+        Arrays.fill(tree, 0);
+        int inserted = 0;
+        for (int node : layer) {
+            for (int a = outStart[node]; a < outStart[node + 1]; ++a) {
+                cross[outEdge[a]] = inserted - prefix(nodePos[outNode[a]]);
+            }
+            for (int a = outStart[node]; a < outStart[node + 1]; ++a) {
+                add(nodePos[outNode[a]]);
+                ++inserted;
+            }
+        }
+
+        Arrays.fill(tree, 0);
+        for (int p = layer.length - 1; p >= 0; --p) {
+            int node = layer[p];
+            for (int a = outStart[node]; a < outStart[node + 1]; ++a) {
+                cross[outEdge[a]] += prefix(nodePos[outNode[a]] - 1);
+            }
+            for (int a = outStart[node]; a < outStart[node + 1]; ++a) {
+                add(nodePos[outNode[a]]);
+            }
+        }
+    }
+
+    /***
+     * Insert an edge ending at sink position pos
+     */
+    private void add(int pos) {
+        for (int i = pos + 1; i < tree.length; i += i & -i) {
+            ++tree[i];
+        }
+    }
+
+    /***
+     * @return the number of inserted edges ending at a sink position <= pos
+     */
+    private int prefix(int pos) {
+        int sum = 0;
+        for (int i = pos + 1; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+}
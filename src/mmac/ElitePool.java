@@ -0,0 +1,86 @@
+package mmac;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+/***
+ * The information shared by the workers of a cooperative search on one instance:
+ * the best solution found by any worker, kept in a lock-free reference,
+ * and a small pool of elite layer orderings the workers restart from when they stagnate.
+ */
+public class ElitePool {
+
+    private final int capacity;
+    private final long startTime;
+    private boolean VERBOSE = true;
+
+    private final AtomicReference<MMACSolver.Solution> best = new AtomicReference<>();
+    // sorted by ascending M, guarded by this
+    private final ArrayList<MMACSolver.Solution> elites = new ArrayList<>();
+
+    public ElitePool(int capacity) {
+        this.capacity = capacity;
+        startTime = System.currentTimeMillis();
+    }
+
+    public void setVERBOSE(boolean verbose){ VERBOSE = verbose;}
+
+    public MMACSolver.Solution getBest() {
+        return best.get();
+    }
+
+    public int getBestM() {
+        MMACSolver.Solution sol = best.get();
+        return sol == null ? Integer.MAX_VALUE : sol.getM();
+    }
+
+    /***
+     * Offer a new best solution of a worker
+     * @return whether it improved the global best
+     */
+    public boolean offer(MMACSolver.Solution sol, int worker) {
+        addElite(sol);
+        if (VERBOSE) {
+            System.out.println("Worker " + worker + ": " + sol.getM());
+        }
+        for (;;) {
+            MMACSolver.Solution curr = best.get();
+            if (curr != null && curr.getM() <= sol.getM()) {
+                return false;
+            }
+            if (best.compareAndSet(curr, sol)) {
+                if (VERBOSE) {
+                    System.out.println("Global best: " + sol.getM() + " by worker " + worker
+                            + " at " + (System.currentTimeMillis() - startTime) / 1000.0 + "s");
+                }
+                return true;
+            }
+        }
+    }
+
+    private synchronized void addElite(MMACSolver.Solution sol) {
+        if (elites.size() == capacity && elites.get(capacity - 1).getM() <= sol.getM()) {
+            return;
+        }
+        int index = 0;
+        while (index < elites.size() && elites.get(index).getM() <= sol.getM()) {
+            if (elites.get(index).getM() == sol.getM() && Arrays.deepEquals(elites.get(index).sol, sol.sol)) {
+                return;
+            }
+            ++index;
+        }
+        elites.add(index, sol);
+        if (elites.size() > capacity) {
+            elites.remove(capacity);
+        }
+    }
+
+    /***
+     * Pick a uniformly random elite solution
+     */
+    public synchronized MMACSolver.Solution pick(Random random) {
+        return elites.get(random.nextInt(elites.size()));
+    }
+}
@@ -0,0 +1,129 @@
+package mmac;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/***
+ * The graph of an instance, loaded once and shared by any number of solvers, possibly concurrently.
+ * It never changes after construction; a solver only keeps its own layer orderings, crossing counts and buffers.
+ *
+ * The graph is stored in flat arrays (CSR style) indexed by node id (0-based)
+ * and edge id (the order of the arcs in the instance file).
+ * outStart/outEdge list the out edges of every node, outNode holds the sink of
+ * the corresponding edge, so the hot loops do not need to go through edgeSink.
+ * inStart/inEdge/inNode are the same for the in edges.
+ * The arrays are shared with the solvers, which must never write them.
+ */
+public final class Instance {
+
+    private final String name;
+    final int nodeNum;
+    final int edgeNum;
+    final int[] outStart;
+    final int[] outEdge;
+    final int[] outNode;
+    final int[] inStart;
+    final int[] inEdge;
+    final int[] inNode;
+    final int[] edgeSource;
+    final int[] edgeSink;
+    // the nodes of layer l are firstNode[l] .. firstNode[l+1]-1 in the instance file order
+    private final int[] firstNode;
+    final int maxLayerSize;
+    // whether two edges join the same pair of nodes
+    final boolean multiEdges;
+
+    private Instance(String name, InstanceIO.InstanceData data) {
+        this.name = name;
+        nodeNum = data.nodeNum;
+        edgeNum = data.edgeNum;
+        edgeSource = data.edgeSource;
+        edgeSink = data.edgeSink;
+
+        int layerNum = data.layerSizes.length;
+        firstNode = new int[layerNum + 1];
+        int md = 0;
+        for (int l = 0; l < layerNum; ++l) {
+            firstNode[l + 1] = firstNode[l] + data.layerSizes[l];
+            if (md < data.layerSizes[l]) md = data.layerSizes[l];
+        }
+        maxLayerSize = md;
+
+        outStart = new int[nodeNum + 1];
+        inStart = new int[nodeNum + 1];
+        outEdge = new int[edgeNum];
+        outNode = new int[edgeNum];
+        inEdge = new int[edgeNum];
+        inNode = new int[edgeNum];
+        buildAdjacency(edgeSource, edgeSink, outStart, outEdge, outNode);
+        buildAdjacency(edgeSink, edgeSource, inStart, inEdge, inNode);
+        multiEdges = hasMultiEdges();
+    }
+
+    /***
+     * Read an instance file, text or binary, see InstanceIO
+     */
+    public static Instance load(String file) throws IOException {
+        return new Instance(file, InstanceIO.read(file));
+    }
+
+    /***
+     * Build the CSR adjacency of the edges grouped by from[e], keeping the file order inside each group
+     */
+    private void buildAdjacency(int[] from, int[] to, int[] start, int[] adjEdge, int[] adjNode) {
+        for (int e = 0; e < edgeNum; ++e) {
+            ++start[from[e] + 1];
+        }
+        for (int n = 0; n < nodeNum; ++n) {
+            start[n + 1] += start[n];
+        }
+        int[] next = Arrays.copyOf(start, nodeNum);
+        for (int e = 0; e < edgeNum; ++e) {
+            int slot = next[from[e]]++;
+            adjEdge[slot] = e;
+            adjNode[slot] = to[e];
+        }
+    }
+
+    private boolean hasMultiEdges() {
+        // seen[m] == n + 1 iff m is already a sink of n
+        int[] seen = new int[nodeNum];
+        for (int n = 0; n < nodeNum; ++n) {
+            for (int a = outStart[n]; a < outStart[n + 1]; ++a) {
+                if (seen[outNode[a]] == n + 1) return true;
+                seen[outNode[a]] = n + 1;
+            }
+        }
+        return false;
+    }
+
+    /***
+     * @return the file the instance was loaded from
+     */
+    public String getName() {
+        return name;
+    }
+
+    public int getNodeNum() {
+        return nodeNum;
+    }
+
+    public int getEdgeNum() {
+        return edgeNum;
+    }
+
+    public int getLayerNum() {
+        return firstNode.length - 1;
+    }
+
+    public int getLayerSize(int layer) {
+        return firstNode[layer + 1] - firstNode[layer];
+    }
+
+    /***
+     * @return the id of the first node of a layer, the others follow consecutively
+     */
+    int getFirstNode(int layer) {
+        return firstNode[layer];
+    }
+}
@@ -0,0 +1,175 @@
+package mmac;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/***
+ * Reading and writing of instance files.
+ *
+ * The text format is the one described in the README. It is parsed from a memory-mapped
+ * file by a tokenizer that accepts any run of spaces, tabs and line breaks as a separator
+ * and does not allocate per token.
+ *
+ * The binary format is the magic "MMACBIN1" followed by big-endian ints:
+ * the numbers of vertices, arcs and layers, the size of every layer, and the
+ * (source, sink) pair of every arc with 0-based vertex ids.
+ * read() recognises it by its magic whatever the file name is.
+ *
+ * Convert a text instance with
+ *   java -cp MMAC.jar mmac.InstanceIO &lt;instance.txt&gt; &lt;instance.bin&gt;
+ */
+public final class InstanceIO {
+
+    private static final byte[] MAGIC = "MMACBIN1".getBytes(StandardCharsets.US_ASCII);
+
+    private InstanceIO() {
+    }
+
+    /***
+     * The raw content of an instance file
+     */
+    static final class InstanceData {
+        int nodeNum;
+        int edgeNum;
+        int[] layerSizes;
+        // 0-based ids of the ends of every arc, in file order
+        int[] edgeSource;
+        int[] edgeSink;
+    }
+
+    static InstanceData read(String file) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (hasMagic(buf)) {
+                return readBinary(buf, file);
+            }
+            return readText(buf, file);
+        }
+    }
+
+    private static boolean hasMagic(ByteBuffer buf) {
+        if (buf.remaining() < MAGIC.length) return false;
+        for (int i = 0; i < MAGIC.length; ++i) {
+            if (buf.get(i) != MAGIC[i]) return false;
+        }
+        return true;
+    }
+
+    private static InstanceData readText(ByteBuffer buf, String file) throws IOException {
+        Tokenizer tk = new Tokenizer(buf, file);
+        InstanceData data = new InstanceData();
+        data.nodeNum = tk.nextInt();
+        data.edgeNum = tk.nextInt();
+        int layerNum = tk.nextInt();
+        data.layerSizes = new int[layerNum];
+        for (int l = 0; l < layerNum; ++l) {
+            data.layerSizes[l] = tk.nextInt();
+        }
+        data.edgeSource = new int[data.edgeNum];
+        data.edgeSink = new int[data.edgeNum];
+        for (int e = 0; e < data.edgeNum; ++e) {
+            data.edgeSource[e] = tk.nextInt() - 1;
+            data.edgeSink[e] = tk.nextInt() - 1;
+        }
+        return data;
+    }
+
+    private static InstanceData readBinary(ByteBuffer buf, String file) throws IOException {
+        buf.position(MAGIC.length);
+        IntBuffer ints = buf.slice().asIntBuffer();
+        if (ints.remaining() < 3) {
+            throw new IOException(file + ": truncated binary instance");
+        }
+        InstanceData data = new InstanceData();
+        data.nodeNum = ints.get();
+        data.edgeNum = ints.get();
+        int layerNum = ints.get();
+        if (ints.remaining() != layerNum + 2L * data.edgeNum) {
+            throw new IOException(file + ": truncated binary instance");
+        }
+        data.layerSizes = new int[layerNum];
+        ints.get(data.layerSizes);
+        data.edgeSource = new int[data.edgeNum];
+        data.edgeSink = new int[data.edgeNum];
+        for (int e = 0; e < data.edgeNum; ++e) {
+            data.edgeSource[e] = ints.get();
+            data.edgeSink[e] = ints.get();
+        }
+        return data;
+    }
+
+    static void writeBinary(InstanceData data, String file) throws IOException {
+        int layerNum = data.layerSizes.length;
+        ByteBuffer buf = ByteBuffer.allocate(MAGIC.length + 4 * (3 + layerNum + 2 * data.edgeNum));
+        buf.put(MAGIC);
+        buf.putInt(data.nodeNum);
+        buf.putInt(data.edgeNum);
+        buf.putInt(layerNum);
+        for (int size : data.layerSizes) {
+            buf.putInt(size);
+        }
+        for (int e = 0; e < data.edgeNum; ++e) {
+            buf.putInt(data.edgeSource[e]);
+            buf.putInt(data.edgeSink[e]);
+        }
+        buf.flip();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            channel.truncate(0);
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        }
+    }
+
+    /***
+     * Whitespace separated non-negative integers
+     */
+    private static final class Tokenizer {
+        private final ByteBuffer buf;
+        private final String file;
+
+        Tokenizer(ByteBuffer buf, String file) {
+            this.buf = buf;
+            this.file = file;
+        }
+
+        int nextInt() throws IOException {
+            byte c;
+            do {
+                if (!buf.hasRemaining()) {
+                    throw new IOException(file + ": unexpected end of file");
+                }
+                c = buf.get();
+            } while (c == ' ' || c == '\t' || c == '\r' || c == '\n');
+
+            int value = 0;
+            for (;;) {
+                if (c < '0' || c > '9') {
+                    throw new IOException(file + ": unexpected character '" + (char) c + "' at byte " + (buf.position() - 1));
+                }
+                if (value > (Integer.MAX_VALUE - (c - '0')) / 10) {
+                    throw new IOException(file + ": number too large at byte " + (buf.position() - 1));
+                }
+                value = value * 10 + (c - '0');
+                if (!buf.hasRemaining()) return value;
+                c = buf.get();
+                if (c == ' ' || c == '\t' || c == '\r' || c == '\n') return value;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: java -cp MMAC.jar mmac.InstanceIO <instance.txt> <instance.bin>");
+            System.exit(1);
+        }
+        writeBinary(read(args[0]), args[1]);
+    }
+}
@@ -0,0 +1,222 @@
+package mmac;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/***
+ * The minimal JSON support of SolverService, to stay free of third party libraries.
+ * parse maps objects to LinkedHashMap, arrays to ArrayList, numbers to Double,
+ * and strings, booleans and null to String, Boolean and null.
+ */
+final class Json {
+
+    private final String text;
+    private int pos;
+
+    private Json(String text) {
+        this.text = text;
+    }
+
+    static Object parse(String text) {
+        Json json = new Json(text);
+        json.skipSpaces();
+        Object value = json.value();
+        json.skipSpaces();
+        if (json.pos != text.length()) {
+            throw json.error("end of input expected");
+        }
+        return value;
+    }
+
+    private Object value() {
+        if (pos >= text.length()) throw error("value expected");
+        char c = text.charAt(pos);
+        switch (c) {
+            case '{':
+                return object();
+            case '[':
+                return array();
+            case '"':
+                return string();
+            case 't':
+                literal("true");
+                return Boolean.TRUE;
+            case 'f':
+                literal("false");
+                return Boolean.FALSE;
+            case 'n':
+                literal("null");
+                return null;
+            default:
+                return number();
+        }
+    }
+
+    private Map<String, Object> object() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        ++pos;
+        skipSpaces();
+        if (peek() == '}') {
+            ++pos;
+            return map;
+        }
+        for (;;) {
+            skipSpaces();
+            if (peek() != '"') throw error("key expected");
+            String key = string();
+            skipSpaces();
+            expect(':');
+            skipSpaces();
+            map.put(key, value());
+            skipSpaces();
+            if (peek() == ',') {
+                ++pos;
+            } else {
+                expect('}');
+                return map;
+            }
+        }
+    }
+
+    private List<Object> array() {
+        List<Object> list = new ArrayList<>();
+        ++pos;
+        skipSpaces();
+        if (peek() == ']') {
+            ++pos;
+            return list;
+        }
+        for (;;) {
+            skipSpaces();
+            list.add(value());
+            skipSpaces();
+            if (peek() == ',') {
+                ++pos;
+            } else {
+                expect(']');
+                return list;
+            }
+        }
+    }
+
+    private String string() {
+        StringBuilder sb = new StringBuilder();
+        ++pos;
+        for (;;) {
+            if (pos >= text.length()) throw error("unterminated string");
+            char c = text.charAt(pos++);
+            if (c == '"') return sb.toString();
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (pos >= text.length()) throw error("unterminated string");
+            char e = text.charAt(pos++);
+            switch (e) {
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    if (pos + 4 > text.length()) throw error("bad unicode escape");
+                    try {
+                        sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw error("bad unicode escape");
+                    }
+                    pos += 4;
+                    break;
+                default:
+                    sb.append(e);
+            }
+        }
+    }
+
+    /***
+     * A number of the JSON grammar: an optional minus, no leading zero nor plus sign,
+     * digits on both sides of the point and in the exponent
+     */
+    private Double number() {
+        int start = pos;
+        if (peek() == '-') ++pos;
+        if (peek() == '0') {
+            ++pos;
+        } else if (isDigit(peek())) {
+            digits();
+        } else {
+            pos = start;
+            throw error("value expected");
+        }
+        if (peek() == '.') {
+            ++pos;
+            if (!isDigit(peek())) throw error("digit expected");
+            digits();
+        }
+        if (peek() == 'e' || peek() == 'E') {
+            ++pos;
+            if (peek() == '+' || peek() == '-') ++pos;
+            if (!isDigit(peek())) throw error("digit expected");
+            digits();
+        }
+        return Double.valueOf(text.substring(start, pos));
+    }
+
+    private void digits() {
+        while (isDigit(peek())) ++pos;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private void literal(String word) {
+        if (!text.startsWith(word, pos)) throw error(word + " expected");
+        pos += word.length();
+    }
+
+    private void expect(char c) {
+        if (peek() != c) throw error("'" + c + "' expected");
+        ++pos;
+    }
+
+    private char peek() {
+        return pos < text.length() ? text.charAt(pos) : 0;
+    }
+
+    private void skipSpaces() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            ++pos;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Invalid JSON at " + pos + ": " + message);
+    }
+
+    /***
+     * @return s as a JSON string literal
+     */
+    static String quote(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); ++i) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
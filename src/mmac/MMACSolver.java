@@ -1,118 +1,652 @@
 package mmac;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 import java.io.*;
+import java.lang.management.ManagementFactory;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class MMACSolver {
 
     private float PERTURB_STRENGTH = 0.1f;
     private float MAX_MOVE_DISTANCE_DENOMINATOR = 1.0f;
-    private double TIME_LIMIT = 60;
+    // may be changed by another thread while solve is running
+    private volatile double TIME_LIMIT = 60;
+    // extra stopping criteria, see the setters
+    private int MAX_ITERATIONS = Integer.MAX_VALUE;
+    private long MAX_EVALUATIONS = Long.MAX_VALUE;
+    private int TARGET_M = 0;
+    private int MAX_STAGNATION = Integer.MAX_VALUE;
+    private boolean VERBOSE = true;
+    // seconds between two progress lines of the local search, 0 for none
+    private double LOG_INTERVAL = 1;
+    // register the metrics as an MBean during solve
+    private boolean JMX = false;
+    // validate every snapshot against a full recount of the crossings
+    private boolean DEBUG = false;
 
     private final int LAMBDA = 10000;
-    private final int MAX_MOVE_DISTANCE;
+    // set by init from MAX_MOVE_DISTANCE_DENOMINATOR, so the setter works until solve is called
+    private int MAX_MOVE_DISTANCE;
+    // tune the move distance and the perturbation strength during the run, see setADAPTIVE
+    private boolean ADAPTIVE = false;
+    private AdaptiveController adaptive;
     private final int DISTANCE_MEMORY = 5;
+    // the bitset kernel of calcSwapDelta is used when the product of the degrees exceeds
+    // BIT_KERNEL_COST times their sum (plus the bitset words), and both are at least BIT_KERNEL_MIN_DEGREE
+    private static final int BIT_KERNEL_COST = 1;
+    private static final int BIT_KERNEL_MIN_DEGREE = 3;
     private int moveMaxDistance;
-    private ArrayList<ArrayList<Node>> layers;
-    private ArrayList<Node> allNodes;
+
+    // the graph arrays of the shared Instance (read only), copied to fields for the hot loops
+    private final int nodeNum;
+    private final int edgeNum;
+    private final int[] outStart;
+    private final int[] outEdge;
+    private final int[] outNode;
+    private final int[] inStart;
+    private final int[] inEdge;
+    private final int[] inNode;
+    private final int[] edgeSource;
+    private final int[] edgeSink;
+
+    private final int maxLayerSize;
+    final int[] nodeLayer;
+    final int[] nodePos;
+    final int[] nodeMaxCross;
+    // position of each node in allNodes
+    private final int[] nodeIndex;
+    private final int[] edgeCross;
+
+    // layers[l][p] is the node at position p of layer l
+    final int[][] layers;
+    // all nodes sorted by descending maxCross
+    final int[] allNodes;
+    // crossRank[v] is the number of nodes whose maxCross is larger than v,
+    // i.e. the index in allNodes of the first node with maxCross <= v
+    int[] crossRank;
     private Random random;
+    final MoveEvaluator evaluator;
+    private final CrossingCounter crossingCounter;
     private String instance;
+    // the graph, also held by the solutions
+    private final Instance graph;
     private long startTime;
 
-    private Solution bestSol;
+    private volatile Solution bestSol;
+    private volatile boolean cancelled = false;
+    private volatile StopReason stopReason;
+    private final CopyOnWriteArrayList<SolverListener> listeners = new CopyOnWriteArrayList<>();
     int iterationLS = 1;
+    // number of adjacent swaps evaluated by findMove, i.e. of candidate positions for the insertions
+    private long evaluations = 0;
+    private int perturbations = 0;
+    private final SolverMetrics metrics = new SolverMetrics();
+    private long nextLogNanos;
+    private final int seed;
+
+    // cooperative mode, see setElitePool
+    private ElitePool elitePool;
+    private int workerID;
+    private int ELITE_RESTART_STAGNATION = 20;
+
+    // parallel move evaluation, see setEVAL_THREADS
+    private int EVAL_THREADS = 1;
+    private int EVAL_BLOCK;
+    private ForkJoinPool evalPool;
+    private ThreadLocal<MoveEvaluator> evaluators;
+    // evalMoves[2k] and evalMoves[2k+1] are the best negative and positive moves of the k-th node of a block
+    private Move[] evalMoves;
+
+    // reused by every findMove and recalcNodeMaxCross call, so the local search allocates nothing per iteration
+    private final Move bestMove = new Move(-1, -1, Integer.MAX_VALUE);
+    private final Move candidateMove = new Move(-1, -1, Integer.MAX_VALUE);
+    // only evaluate the endpoints of the critical edges, see setCRITICAL_ONLY
+    private boolean CRITICAL_ONLY = false;
+    // variable neighbourhood descent over insertions and block moves, see setVND
+    private boolean VND = false;
+    private int MAX_BLOCK_SIZE = 2;
+    // the layer orderings init starts from instead of a random layering, see setInitialLayers
+    private int[][] initialLayers;
+    private static final int INSERTION = 0;
+    private static final int BLOCK = 1;
+    // the neighbourhood of the move returned by findVNDMove, and the size of the block of a block move
+    private int moveKind = INSERTION;
+    private int moveBlockSize;
+    // the number of moves tied with the best one in the current scan of findBlockMove
+    private int tieCount;
+    // move-delta cache of the sequential findMove, see setMOVE_CACHE
+    private boolean MOVE_CACHE = false;
+    // bumped by every move in layer l-1, l or l+1, i.e. whenever the deltas of the nodes of layer l may change
+    private int[] layerVersion;
+    // bumped when currM changes or all the positions are reset, which invalidates every cached move
+    private int cacheEpoch = 1;
+    private int cachedM = -1;
+    // cached best move of node n towards the left (2n) and the right (2n+1), with the state it was evaluated in
+    private int[] cacheEpochOf;
+    private int[] cacheVersion;
+    private int[] cacheBound;
+    private int[] cacheNewPos;
+    private int[] cacheDelta;
+    // re-evaluates the cached moves in DEBUG mode, with its own Random to keep the trajectory
+    private MoveEvaluator debugEvaluator;
+    // recalcStamp[node] == recalcEpoch iff node was already recalculated by the current recalcNodeMaxCross
+    private int[] recalcStamp;
+    private int recalcEpoch = 0;
+    // calcSwapDelta counts the crossings of high-degree pairs with bitsets of neighbour positions,
+    // which needs every neighbour of a node at a distinct position, i.e. no multi-edges;
+    // denseOut[n] (denseIn[n]) is whether the out (in) degree of n is high enough to consider it
+    private final boolean[] denseOut;
+    private final boolean[] denseIn;
+    // the number of 64-bit words of a bitset of the positions of the largest layer
+    private final int bitWords;
 
     public MMACSolver(String instanceFile, int seed) throws IOException {
-        random = seed >= 0 ? new Random(seed) : new Random();
-        instance = instanceFile;
-        BufferedReader br = new BufferedReader(new FileReader(instanceFile));
-
-        String line = br.readLine();
-
-        String[] data = line.split(" ");
+        this(Instance.load(instanceFile), seed);
+    }
 
-        int nodeNum = Integer.parseInt(data[0]);
-        int edgeNum = Integer.parseInt(data[1]);
-        int layerNum = Integer.parseInt(data[2]);
+    /***
+     * A solver of an already loaded instance, which may be shared with other solvers running concurrently
+     */
+    public MMACSolver(Instance inst, int seed) {
+        this(inst, seed, null);
+    }
 
-        allNodes = new ArrayList<>(nodeNum);
-        for (int i = 1; i <= nodeNum; ++i) {
-            allNodes.add(new Node(i, -1));
+    /***
+     * A solver breaking the ties between the moves of a node with tieRandom instead of its own Random
+     * (when not null), which keeps the other random draws of a seed whatever ties are drawn
+     */
+    MMACSolver(Instance inst, int seed, Random tieRandom) {
+        random = seed >= 0 ? new Random(seed) : new Random();
+        this.seed = seed;
+        instance = inst.getName();
+        graph = inst;
+
+        nodeNum = inst.nodeNum;
+        edgeNum = inst.edgeNum;
+        outStart = inst.outStart;
+        outEdge = inst.outEdge;
+        outNode = inst.outNode;
+        inStart = inst.inStart;
+        inEdge = inst.inEdge;
+        inNode = inst.inNode;
+        edgeSource = inst.edgeSource;
+        edgeSink = inst.edgeSink;
+        int layerNum = inst.getLayerNum();
+
+        nodeLayer = new int[nodeNum];
+        nodePos = new int[nodeNum];
+        nodeMaxCross = new int[nodeNum];
+        nodeIndex = new int[nodeNum];
+        allNodes = new int[nodeNum];
+        for (int i = 0; i < nodeNum; ++i) {
+            nodeLayer[i] = -1;
+            nodeIndex[i] = i;
+            allNodes[i] = i;
         }
 
-        layers = new ArrayList<>(layerNum);
-
-        line = br.readLine();
-        data = line.split(" ");
-
-        int sIndex = 0;
-        int layerId = 0;
-        for (String s : data) {
-            int eIndex = sIndex + Integer.parseInt(s);
-            ArrayList<Node> lay = new ArrayList<>(allNodes.subList(sIndex, eIndex));
-            for (int i = 0; i < lay.size(); ++i) {
-                lay.get(i).pos = i;
-                lay.get(i).layerID = layerId;
+        layers = new int[layerNum][];
+        for (int layerId = 0; layerId < layerNum; ++layerId) {
+            int sIndex = inst.getFirstNode(layerId);
+            int[] lay = new int[inst.getLayerSize(layerId)];
+            for (int i = 0; i < lay.length; ++i) {
+                lay[i] = sIndex + i;
+                nodePos[sIndex + i] = i;
+                nodeLayer[sIndex + i] = layerId;
             }
-            layers.add(lay);
-            ++layerId;
-            sIndex = eIndex;
+            layers[layerId] = lay;
         }
 
-        for (int i = 0; i < edgeNum; ++i) {
-            line = br.readLine();
-            data = line.split(" ");
-            int source = Integer.parseInt(data[0]);
-            int sink = Integer.parseInt(data[1]);
-            Edge edge = new Edge(allNodes.get(source - 1), allNodes.get(sink - 1));
-            allNodes.get(source - 1).outEdges.add(edge);
-            allNodes.get(sink - 1).inEdges.add(edge);
+        edgeCross = new int[edgeNum];
+        recalcStamp = new int[nodeNum];
+        layerVersion = new int[layerNum];
+        denseOut = new boolean[nodeNum];
+        denseIn = new boolean[nodeNum];
+        for (int n = 0; n < nodeNum && !inst.multiEdges; ++n) {
+            denseOut[n] = outStart[n + 1] - outStart[n] >= BIT_KERNEL_MIN_DEGREE;
+            denseIn[n] = inStart[n + 1] - inStart[n] >= BIT_KERNEL_MIN_DEGREE;
         }
+        bitWords = (inst.maxLayerSize + 63) >>> 6;
+        evaluator = new MoveEvaluator(tieRandom != null ? tieRandom : random);
 
-        br.close();
-
-        int md = 0;
-        for (ArrayList<Node> layer : layers) {
-            if (md < layer.size()) md = layer.size();
-        }
-        MAX_MOVE_DISTANCE = (int) (md * MAX_MOVE_DISTANCE_DENOMINATOR);
+        maxLayerSize = inst.maxLayerSize;
+        crossingCounter = new CrossingCounter(outStart, outEdge, outNode, inst.maxLayerSize);
     }
 
+    /***
+     * Can also be called while solve is running, from any thread, to extend or shorten the run.
+     * The time limit is checked after every local search.
+     */
     public void setTIME_LIMIT(double time_limit){
         TIME_LIMIT = time_limit;
     }
     public void setPERTURB_STRENGTH(float strength){ PERTURB_STRENGTH = strength;}
+    /***
+     * The maximum distance of a move is d times the size of the largest layer, see init
+     */
     public void setMAX_MOVE_DISTANCE_DENOMINATOR(float d){ MAX_MOVE_DISTANCE_DENOMINATOR = d;}
+    /***
+     * Tune the move distance and the perturbation strength online, see AdaptiveController:
+     * every perturbation uses one of several multiples of PERTURB_STRENGTH and the local search after it
+     * one of several fractions of the maximum distance, each chosen on how often per second it led back
+     * to a solution as good as the best one so far.
+     * The decisions are logged when VERBOSE. As they depend on measured times,
+     * a run is not reproducible from its seed even with an iteration or evaluation budget.
+     */
+    public void setADAPTIVE(boolean adaptive){ ADAPTIVE = adaptive;}
+    /***
+     * Stop once the local search has done this many iterations
+     */
+    public void setMAX_ITERATIONS(int iterations){ MAX_ITERATIONS = iterations;}
+    /***
+     * Stop once findMove has evaluated this many adjacent swaps, one per candidate position of an insertion
+     * and one per node of the block for the block moves of setVND
+     */
+    public void setMAX_EVALUATIONS(long evaluations){ MAX_EVALUATIONS = evaluations;}
+    /***
+     * Stop as soon as a solution with M <= target is found (0 by default, as M = 0 is optimal)
+     */
+    public void setTARGET_M(int target){ TARGET_M = target;}
+    /***
+     * Stop after this many consecutive perturbations without improving the best solution
+     */
+    public void setMAX_STAGNATION(int perturbations){ MAX_STAGNATION = perturbations;}
+    public void setVERBOSE(boolean verbose){ VERBOSE = verbose;}
+    /***
+     * Print a progress line of the local search at most every interval seconds (when VERBOSE), 0 for none
+     */
+    public void setLOG_INTERVAL(double interval){ LOG_INTERVAL = interval;}
+    /***
+     * Register the metrics of the run as the MBean mmac:type=SolverMetrics,instance=...,seed=...
+     * while solve is running
+     */
+    public void setJMX(boolean jmx){ JMX = jmx;}
+    public void setDEBUG(boolean debug){ DEBUG = debug;}
+    public void setELITE_RESTART_STAGNATION(int perturbations){ ELITE_RESTART_STAGNATION = perturbations;}
+
+    /***
+     * Join a cooperative search: every new best of this solver is offered to the pool,
+     * and after ELITE_RESTART_STAGNATION perturbations without improvement the next
+     * perturbation starts from an elite solution of the pool instead of the current one.
+     * @param pool the pool shared by all the workers solving the same instance
+     * @param worker the id of this worker, used in the progress report
+     */
+    public void setElitePool(ElitePool pool, int worker) {
+        elitePool = pool;
+        workerID = worker;
+    }
+
+    /***
+     * Evaluate the candidate moves of findMove on a fork-join pool of the given size.
+     * The nodes are evaluated by blocks of 4 * threads nodes in allNodes order, every
+     * thread using its own scratch buffers. As in the sequential scan, the search stops
+     * at the first node offering an improving move and ties are broken uniformly at random.
+     * The random tie-breaking inside a node uses a Random seeded from the node id and one
+     * value drawn from the solver Random per scan, so for a given seed the trajectory does
+     * not depend on the number of threads. It differs from the sequential trajectory.
+     * @param threads the number of threads, 1 for the sequential scan
+     */
+    public void setEVAL_THREADS(int threads){ EVAL_THREADS = threads;}
+    /***
+     * Cache the best left and right moves of every node across the iterations of the sequential findMove.
+     * The moves of a node only depend on the positions in its layer and in the two adjacent layers
+     * and on the current M, so a cached move is reused until a move is made in one of these layers,
+     * M changes or the whole solution is reset (initialization, elite restart).
+     * A reused move does not draw its tie-breaking random numbers again, so the trajectory differs
+     * from the uncached one. Only the moves actually evaluated count towards MAX_EVALUATIONS.
+     * Ignored by the parallel evaluation.
+     */
+    public void setMOVE_CACHE(boolean cache){ MOVE_CACHE = cache;}
+    /***
+     * Restrict findMove to the endpoints of the critical edges, i.e. the edges with currM crossings.
+     * The maxCross of a node is the largest crossing count of its edges, so the nodes whose maxCross is currM
+     * are exactly these endpoints: the set is the prefix of allNodes that crossRank delimits, maintained
+     * incrementally by makeMove through setNodeMaxCross, and an iteration costs O(critical endpoints)
+     * node evaluations instead of up to O(V). checkSolution verifies the set against a full recount in DEBUG mode.
+     * The trade-off: the other nodes can also remove crossings of a critical edge by moving across it, and
+     * these improving moves are dropped, so the local search may stop in a state the full neighbourhood would
+     * improve. The cheaper iterations pay off on small sparse instances (north.40.131.15 in 8 seconds: M 8
+     * instead of 9), but the final M is worse on the large uniform and connected instances (noug8-rnd-001
+     * in 20 seconds: 173.3 instead of 159.7 on average), hence it is off by default.
+     */
+    public void setCRITICAL_ONLY(boolean critical){ CRITICAL_ONLY = critical;}
+    /***
+     * Turn the local search into a variable neighbourhood descent: when no insertion improves,
+     * try the moves of blocks of 2 to MAX_BLOCK_SIZE consecutive nodes, going back to the insertions
+     * after every improving move. The local search only stops when neither neighbourhood improves.
+     * The block moves are only scanned for the endpoints of the critical edges, within the same distance d,
+     * stopping at the first node offering an improving move, sequentially even with EVAL_THREADS > 1.
+     * A block of size k costs O(k d) adjacent swaps, as its delta is accumulated step by step like the one of
+     * an insertion. The swaps of two nodes were dropped: the delta of the swap with a partner at distance t
+     * needs the crossings of every node in between with the partner, i.e. O(d^2) per node, and made the
+     * iterations about 6 times slower for a worse M. In 20 seconds (seeds 0 to 5) the descent lowers the average M
+     * of the insertions alone from 157.7 to 157.2 on noug7-rnd-001 and from 159 to 158.8 on noug8-rnd-001,
+     * less than the spread between the seeds, hence it is off by default.
+     */
+    public void setVND(boolean vnd){ VND = vnd;}
+    public void setMAX_BLOCK_SIZE(int size){ MAX_BLOCK_SIZE = size;}
+    /***
+     * Start every later solve from these layer orderings instead of a random layering, null to go back to random ones.
+     * They may come from a slightly different version of the graph: as the node ids follow the layers in the
+     * instance file, a node is matched by its layer and its offset among the nodes of its layer in the file,
+     * so the nodes added at the end of a layer or to other layers do not change the match. The nodes beyond
+     * the size of their layer in this instance are skipped (removed), and the ones not listed
+     * are inserted at the barycenter of their neighbours, see warmConstruction.
+     * @param layers layers[l] lists the (0-based) nodes of layer l of the previous graph from left to right,
+     * as in Solution.getLayers; every layer must list each of its nodes once
+     */
+    public void setInitialLayers(int[][] layers){
+        if (layers == null) {
+            initialLayers = null;
+            return;
+        }
+        initialLayers = new int[layers.length][];
+        int first = 0;
+        for (int l = 0; l < layers.length; ++l) {
+            int size = layers[l].length;
+            boolean[] listed = new boolean[size];
+            initialLayers[l] = new int[size];
+            for (int p = 0; p < size; ++p) {
+                int offset = layers[l][p] - first;
+                if (offset < 0 || offset >= size || listed[offset]) {
+                    throw new IllegalArgumentException("layer " + l + " must list each of the nodes "
+                            + (first + 1) + " to " + (first + size) + " once");
+                }
+                listed[offset] = true;
+                initialLayers[l][p] = offset;
+            }
+            first += size;
+        }
+    }
+    public void setInitialSolution(Solution sol){ setInitialLayers(sol.sol);}
+
+    /***
+     * Apply every option of options, see SolverOptions; the verbosity, DEBUG and the cooperative settings are left as they are
+     */
+    public void setOptions(SolverOptions options) {
+        setTIME_LIMIT(options.TIME_LIMIT);
+        setPERTURB_STRENGTH(options.PERTURB_STRENGTH);
+        setMAX_MOVE_DISTANCE_DENOMINATOR(options.MAX_MOVE_DISTANCE_DENOMINATOR);
+        setMAX_ITERATIONS(options.MAX_ITERATIONS);
+        setMAX_EVALUATIONS(options.MAX_EVALUATIONS);
+        setTARGET_M(options.TARGET_M);
+        setMAX_STAGNATION(options.MAX_STAGNATION);
+        setMOVE_CACHE(options.MOVE_CACHE);
+        setCRITICAL_ONLY(options.CRITICAL_ONLY);
+        setVND(options.VND);
+        setMAX_BLOCK_SIZE(options.MAX_BLOCK_SIZE);
+        setADAPTIVE(options.ADAPTIVE);
+        setEVAL_THREADS(options.EVAL_THREADS);
+        setInitialLayers(options.initialLayers);
+        setLOG_INTERVAL(options.LOG_INTERVAL);
+        setJMX(options.JMX);
+    }
+
     public void solve() throws IOException {
+        // a solver can be solved again, every run starts over from init with fresh counters
         startTime = System.currentTimeMillis();
+        stopReason = null;
+        bestSol = null;
+        iterationLS = 1;
+        evaluations = 0;
+        perturbations = 0;
+        metrics.start();
+        nextLogNanos = System.nanoTime() + (long) (LOG_INTERVAL * 1e9);
+        ObjectName mbeanName = JMX ? registerMetrics() : null;
+        if (MOVE_CACHE && cacheDelta == null) {
+            cacheEpochOf = new int[2 * nodeNum];
+            cacheVersion = new int[2 * nodeNum];
+            cacheBound = new int[2 * nodeNum];
+            cacheNewPos = new int[2 * nodeNum];
+            cacheDelta = new int[2 * nodeNum];
+        }
+        if (EVAL_THREADS > 1) {
+            evalPool = new ForkJoinPool(EVAL_THREADS);
+            evaluators = ThreadLocal.withInitial(() -> new MoveEvaluator(new Random()));
+            EVAL_BLOCK = 4 * EVAL_THREADS;
+            evalMoves = new Move[2 * EVAL_BLOCK];
+            for (int k = 0; k < evalMoves.length; ++k) {
+                evalMoves[k] = new Move(-1, -1, Integer.MAX_VALUE);
+            }
+        }
+        try {
+            stopReason = search();
+            metrics.end();
+            for (SolverListener listener : listeners) {
+                listener.onTermination(this, bestSol, stopReason);
+            }
+        } finally {
+            // also when search or a listener throws
+            metrics.end();
+            // the cancel is consumed by the solve it stopped (or that ended before seeing it)
+            cancelled = false;
+            if (evalPool != null) {
+                evalPool.shutdown();
+                evalPool = null;
+            }
+            if (mbeanName != null) {
+                unregisterMetrics(mbeanName);
+            }
+        }
+    }
+
+    private ObjectName registerMetrics() {
+        try {
+            ObjectName name = new ObjectName("mmac:type=SolverMetrics,instance="
+                    + ObjectName.quote(instance) + ",seed=" + seed);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+            return name;
+        } catch (JMException e) {
+            System.err.println("Cannot register the solver metrics: " + e);
+            return null;
+        }
+    }
+
+    private void unregisterMetrics(ObjectName name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            System.err.println("Cannot unregister the solver metrics: " + e);
+        }
+    }
+
+    /***
+     * The counters and timers of the run, they can be read while solve is running
+     */
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }
 
+    /***
+     * Notify listener of the improvements, perturbations and termination of the runs of this solver
+     */
+    public void addListener(SolverListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(SolverListener listener) {
+        listeners.remove(listener);
+    }
+
+    /***
+     * Ask the running solve to stop as soon as possible, i.e. after the current local search iteration.
+     * Safe to call from any thread; solve then returns normally with the best solution found so far.
+     * A cancel made before solve starts stops it right after its first local search.
+     * Every solve consumes the cancel, the next one starts uncancelled.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /***
+     * @return the stopping criterion that ended the last solve, null while it is running
+     */
+    public StopReason getStopReason() {
+        return stopReason;
+    }
+
+    public enum StopReason {
+        TARGET, TIME_LIMIT, ITERATIONS, EVALUATIONS, STAGNATION, CANCELLED
+    }
+
+    private StopReason search() throws IOException {
         init();
-        bestSol = new Solution(this);
+        updateBestSol();
+        if (elitePool != null) elitePool.offer(bestSol, workerID);
+        adaptive = null;
+        int stagnation = 0;
+        int sinceBest = 0;
         for(;;) {
+            int lastBestM = bestSol.M;
             localSearch();
+            if (adaptive != null) adaptive.afterLocalSearch(score());
+            if (bestSol.M < lastBestM) {
+                stagnation = 0;
+                sinceBest = 0;
+                if (elitePool != null) elitePool.offer(bestSol, workerID);
+            } else {
+                ++stagnation;
+                ++sinceBest;
+            }
+
+            if (bestSol.M <= TARGET_M) return StopReason.TARGET;
+            if (elitePool != null && elitePool.getBestM() <= TARGET_M) return StopReason.TARGET;
+            if (cancelled) return StopReason.CANCELLED;
+            if (iterationLS >= MAX_ITERATIONS) return StopReason.ITERATIONS;
+            if (evaluations >= MAX_EVALUATIONS) return StopReason.EVALUATIONS;
+            if (sinceBest >= MAX_STAGNATION) return StopReason.STAGNATION;
 
             double usedTime = (System.currentTimeMillis() - startTime)/1000.0;
             if(usedTime < TIME_LIMIT){
-                randomShufflePerturb(PERTURB_STRENGTH);
+                if (elitePool != null && stagnation >= ELITE_RESTART_STAGNATION) {
+                    applySolution(elitePool.pick(random));
+                    stagnation = 0;
+                }
+                if (ADAPTIVE && adaptive == null) {
+                    // from the first perturbation on, the descent from a random layering is not a cycle
+                    adaptive = new AdaptiveController(MAX_MOVE_DISTANCE, PERTURB_STRENGTH, score(), random,
+                            VERBOSE ? LOG_INTERVAL : 0);
+                }
+                if (adaptive != null) adaptive.beforePerturbation();
+                float strength = adaptive != null ? adaptive.strength() : PERTURB_STRENGTH;
+                randomShufflePerturb(strength);
+                ++perturbations;
+                metrics.perturbation(strength);
+                for (SolverListener listener : listeners) {
+                    listener.onPerturbation(this, perturbations);
+                }
             }else {
-                break;
+                return StopReason.TIME_LIMIT;
             }
-            if (bestSol.M == 0)break;
         }
     }
 
+    /***
+     * The objective refined by the number of endpoints of the critical edges, which the local search also lowers
+     */
+    private long score() {
+        int M = nodeMaxCross[allNodes[0]];
+        return (long) M * (nodeNum + 1) + (M > 0 ? crossRank[M - 1] : 0);
+    }
+
+    private boolean budgetExhausted() {
+        return cancelled || iterationLS >= MAX_ITERATIONS || evaluations >= MAX_EVALUATIONS;
+    }
+
+    /***
+     * Set the layer orderings to those of sol, which may come from another solver of the same instance,
+     * and recount all the crossings.
+     */
+    private void applySolution(Solution sol) {
+        for (int l = 0; l < layers.length; ++l) {
+            int[] order = sol.sol[l];
+            for (int p = 0; p < order.length; ++p) {
+                int node = order[p];
+                layers[l][p] = node;
+                nodePos[node] = p;
+            }
+        }
+        initM();
+    }
+
+    /***
+     * @return the best solution so far, can be called from any thread while solve is running
+     */
     public Solution getBestSol() {
         return bestSol;
     }
 
-    private void initM() {
-        for (Node n : allNodes) {
-            for (Edge e : n.outEdges) {
-                calcCross(e, layers.get(n.layerID));
-            }
+    void initM() {
+        long start = System.nanoTime();
+        ++cacheEpoch;
+        for (int[] layer : layers) {
+            crossingCounter.count(layer, nodePos, edgeCross);
         }
         calcAllNodeMaxCross();
-        allNodes.sort((a, b) -> -Integer.compare(a.maxCross, b.maxCross));
+        sortAllNodes();
+        metrics.initM(System.nanoTime() - start);
+    }
+
+    /***
+     * Stable counting sort of allNodes by descending maxCross, rebuilding crossRank.
+     */
+    private void sortAllNodes() {
+        int maxCross = 0;
+        for (int n : allNodes) {
+            if (maxCross < nodeMaxCross[n]) maxCross = nodeMaxCross[n];
+        }
+        int[] count = new int[maxCross + 2];
+        for (int n : allNodes) {
+            ++count[nodeMaxCross[n]];
+        }
+        crossRank = new int[maxCross + 2];
+        for (int v = maxCross - 1; v >= 0; --v) {
+            crossRank[v] = crossRank[v + 1] + count[v + 1];
+        }
+        int[] next = Arrays.copyOf(crossRank, crossRank.length);
+        int[] sorted = new int[nodeNum];
+        for (int n : allNodes) {
+            sorted[next[nodeMaxCross[n]]++] = n;
+        }
+        for (int i = 0; i < nodeNum; ++i) {
+            allNodes[i] = sorted[i];
+            nodeIndex[sorted[i]] = i;
+        }
+    }
+
+    /***
+     * Change the maxCross of a node and keep allNodes sorted.
+     * Each unit step swaps the node with the boundary element of its bucket,
+     * so the cost is O(|newMaxCross - nodeMaxCross[node]|) instead of a full re-sort.
+     */
+    private void setNodeMaxCross(int node, int newMaxCross) {
+        while (nodeMaxCross[node] < newMaxCross) {
+            int v = nodeMaxCross[node];
+            if (v + 1 >= crossRank.length) {
+                crossRank = Arrays.copyOf(crossRank, 2 * crossRank.length);
+            }
+            swapAllNodes(nodeIndex[node], crossRank[v]);
+            ++crossRank[v];
+            nodeMaxCross[node] = v + 1;
+        }
+        while (nodeMaxCross[node] > newMaxCross) {
+            int v = nodeMaxCross[node];
+            swapAllNodes(nodeIndex[node], crossRank[v - 1] - 1);
+            --crossRank[v - 1];
+            nodeMaxCross[node] = v - 1;
+        }
+    }
+
+    private void swapAllNodes(int i, int j) {
+        int a = allNodes[i];
+        int b = allNodes[j];
+        allNodes[i] = b;
+        nodeIndex[b] = i;
+        allNodes[j] = a;
+        nodeIndex[a] = j;
     }
 
     /***
@@ -129,73 +663,155 @@ public class MMACSolver {
                 i > k && j < l;
     }
 
-    private void calcCross(Edge e, ArrayList<Node> layer) {
-        int lam = 0;
-        for (Node n : layer) {
-            if (n == e.source) continue;
-            for (Edge ep : n.outEdges) {
-                if (ep.sink == e.sink) continue;
-                lam += isCross(e.source.pos, e.sink.pos, ep.source.pos, ep.sink.pos) ?
-                        1 : 0;
-            }
+    void init() {
+        if (VERBOSE) System.out.println("Initializing...");
+        MAX_MOVE_DISTANCE = (int) (maxLayerSize * MAX_MOVE_DISTANCE_DENOMINATOR);
+        if (initialLayers != null) {
+            warmConstruction();
+        } else {
+            randomConstruction();
         }
-        e.cross = lam;
-    }
-
-    private void init() {
-        System.out.println("Initializing...");
-        randomConstruction();
         initM();
-        System.out.println("Initial obj: " + allNodes.get(0).maxCross);
+        moveMaxDistance = MAX_MOVE_DISTANCE;
+        if (VERBOSE) System.out.println("Initial obj: " + nodeMaxCross[allNodes[0]]);
     }
 
     private void randomConstruction() {
-        for (ArrayList<Node> layer : layers) {
-            Collections.shuffle(layer, random);
+        for (int[] layer : layers) {
+            shuffle(layer, 0, layer.length);
 
-            for (int i = 0; i < layer.size(); ++i) {
-                layer.get(i).pos = i;
+            for (int i = 0; i < layer.length; ++i) {
+                nodePos[layer[i]] = i;
             }
         }
     }
 
-    private void constructSolution() {
-        HashSet<Node> CL = new HashSet<>();
-        HashSet<Node> V = new HashSet<>();
-        for (ArrayList<Node> layer : layers) {
-            CL.addAll(layer);
+    /***
+     * Build the layering from initialLayers, the offsets of the nodes in their layer.
+     * Every node is given a key in [0, 1]: the nodes kept from initialLayers their relative position
+     * among the kept nodes of their layer, the new ones the average key
+     * of their neighbours in the adjacent layers that already have one, layer by layer from the first,
+     * or a random key if none has one. Every layer is then sorted by key, the kept nodes first on ties,
+     * so the kept nodes keep their order and the new ones go to their barycenter.
+     */
+    private void warmConstruction() {
+        double[] key = new double[nodeNum];
+        boolean[] placed = new boolean[nodeNum];
+        // the nodes of a layer are first .. first + size - 1 in the instance file order
+        int first = 0;
+        for (int l = 0; l < layers.length && l < initialLayers.length; ++l) {
+            int[] keptNodes = new int[initialLayers[l].length];
+            int kept = 0;
+            for (int offset : initialLayers[l]) {
+                if (offset < layers[l].length) {
+                    keptNodes[kept++] = first + offset;
+                }
+            }
+            for (int p = 0; p < kept; ++p) {
+                key[keptNodes[p]] = (p + 0.5) / kept;
+                placed[keptNodes[p]] = true;
+            }
+            first += layers[l].length;
+        }
+        boolean[] fromInitial = placed.clone();
+        for (int[] layer : layers) {
+            for (int node : layer) {
+                if (placed[node]) continue;
+                double sum = 0;
+                int count = 0;
+                for (int a = outStart[node]; a < outStart[node + 1]; ++a) {
+                    if (placed[outNode[a]]) {
+                        sum += key[outNode[a]];
+                        ++count;
+                    }
+                }
+                for (int a = inStart[node]; a < inStart[node + 1]; ++a) {
+                    if (placed[inNode[a]]) {
+                        sum += key[inNode[a]];
+                        ++count;
+                    }
+                }
+                key[node] = count > 0 ? sum / count : random.nextDouble();
+            }
+            for (int node : layer) {
+                placed[node] = true;
+            }
         }
 
-        int lP = random.nextInt(layers.size());
-        int vP = random.nextInt(layers.get(lP).size());
-        Node vStar = layers.get(lP).get(vP);
-        vStar.pos = 0;
-        CL.remove(vStar);
+        for (int[] layer : layers) {
+            Integer[] order = new Integer[layer.length];
+            for (int i = 0; i < layer.length; ++i) order[i] = layer[i];
+            Arrays.sort(order, (a, b) -> key[a] != key[b] ? Double.compare(key[a], key[b])
+                    : Boolean.compare(!fromInitial[a], !fromInitial[b]));
+            for (int i = 0; i < layer.length; ++i) {
+                layer[i] = order[i];
+                nodePos[layer[i]] = i;
+            }
+        }
+    }
+
+    /***
+     * Shuffle layer[from, to) exactly as Collections.shuffle does on the corresponding subList
+     */
+    private void shuffle(int[] layer, int from, int to) {
+        for (int i = to - from; i > 1; --i) {
+            int j = from + random.nextInt(i);
+            int tmp = layer[from + i - 1];
+            layer[from + i - 1] = layer[j];
+            layer[j] = tmp;
+        }
+    }
+
+    private void constructSolution() {
+        boolean[] inCL = new boolean[nodeNum];
+        boolean[] inV = new boolean[nodeNum];
+        int clSize = nodeNum;
+        Arrays.fill(inCL, true);
+        ArrayList<Integer> V = new ArrayList<>();
+
+        int lP = random.nextInt(layers.length);
+        int vP = random.nextInt(layers[lP].length);
+        int vStar = layers[lP][vP];
+        nodePos[vStar] = 0;
+        inCL[vStar] = false;
+        --clSize;
+        inV[vStar] = true;
         V.add(vStar);
 
-        while (!CL.isEmpty()) {
-            ArrayList<Node> RCL = getRCL(V);
+        while (clSize > 0) {
+            ArrayList<Integer> RCL = getRCL(V);
             vStar = RCL.get(random.nextInt(RCL.size()));
-            int bc = calcBC(vStar, V);
-            vStar.pos = findBCNearst(layers.get(vStar.layerID), bc, V);
+            int bc = calcBC(vStar, inV);
+            nodePos[vStar] = findBCNearst(layers[nodeLayer[vStar]], bc, inV);
 
-            CL.remove(vStar);
-            V.add(vStar);
+            if (inCL[vStar]) {
+                inCL[vStar] = false;
+                --clSize;
+            }
+            if (!inV[vStar]) {
+                inV[vStar] = true;
+                V.add(vStar);
+            }
         }
 
-        for (ArrayList<Node> layer : layers) {
-            layer.sort(Comparator.comparing(a -> a.pos));
-            for (int i = 0; i < layer.size(); ++i) {
-                layer.get(i).pos = i;
+        for (int[] layer : layers) {
+            Integer[] sorted = new Integer[layer.length];
+            for (int i = 0; i < layer.length; ++i) {
+                sorted[i] = layer[i];
+            }
+            Arrays.sort(sorted, Comparator.comparing(a -> nodePos[a]));
+            for (int i = 0; i < layer.length; ++i) {
+                layer[i] = sorted[i];
+                nodePos[layer[i]] = i;
             }
         }
     }
 
-    private int findBCNearst(ArrayList<Node> layer, int bc, HashSet<Node> V) {
+    private int findBCNearst(int[] layer, int bc, boolean[] inV) {
         HashSet<Integer> usedPos = new HashSet<>();
-        for (Node node : layer) {
-            if (V.contains(node)) {
-                usedPos.add(node.pos);
+        for (int node : layer) {
+            if (inV[node]) {
+                usedPos.add(nodePos[node]);
             }
         }
         if (!usedPos.contains(bc)) return bc;
@@ -205,32 +821,32 @@ public class MMACSolver {
         }
     }
 
-    private int calcBC(Node vStar, HashSet<Node> V) {
+    private int calcBC(int vStar, boolean[] inV) {
         int count = 0;
         int sum = 0;
-        for (Edge e : vStar.outEdges) {
-            if (V.contains(e.sink)) {
+        for (int a = outStart[vStar]; a < outStart[vStar + 1]; ++a) {
+            if (inV[outNode[a]]) {
                 ++count;
-                sum += e.sink.pos;
+                sum += nodePos[outNode[a]];
             }
         }
-        for (Edge e : vStar.inEdges) {
-            if (V.contains(e.source)) {
+        for (int a = inStart[vStar]; a < inStart[vStar + 1]; ++a) {
+            if (inV[inNode[a]]) {
                 ++count;
-                sum += e.source.pos;
+                sum += nodePos[inNode[a]];
             }
         }
         return sum / count;
     }
 
-    private ArrayList<Node> getRCL(HashSet<Node> V) {
-        ArrayList<Node> RCL = new ArrayList<>();
-        for (Node node : V) {
-            for (Edge e : node.outEdges) {
-                RCL.add(e.sink);
+    private ArrayList<Integer> getRCL(ArrayList<Integer> V) {
+        ArrayList<Integer> RCL = new ArrayList<>();
+        for (int node : V) {
+            for (int a = outStart[node]; a < outStart[node + 1]; ++a) {
+                RCL.add(outNode[a]);
             }
-            for (Edge e : node.inEdges) {
-                RCL.add(e.source);
+            for (int a = inStart[node]; a < inStart[node + 1]; ++a) {
+                RCL.add(inNode[a]);
             }
         }
         return RCL;
@@ -241,40 +857,61 @@ public class MMACSolver {
 
 
         boolean wFlag = false;
-        moveMaxDistance = MAX_MOVE_DISTANCE;
+        moveMaxDistance = adaptive != null ? adaptive.distance() : MAX_MOVE_DISTANCE;
+        metrics.localSearch(moveMaxDistance);
 
 
         for (; ; ++iterationLS) {
 
-            Move mv = findMove();
+            long t0 = System.nanoTime();
+            Move mv = VND ? findVNDMove() : findMove();
+            long t1 = System.nanoTime();
             if (!wFlag && mv.delta >= 0) {
                 wFlag = true;
-                if(bestSol.M > allNodes.get(0).maxCross) {
-                    bestSol = new Solution(this);
+                if(bestSol.M > nodeMaxCross[allNodes[0]]) {
+                    updateBestSol();
                 }
             }
 
             if (mv.delta >= 0) {
+                metrics.iteration(t1 - t0, 0, evaluations, nodeMaxCross[allNodes[0]]);
                 iterationLS++;
                 break;
             }
 
-            makeMove(mv);
-            int obj = allNodes.get(0).maxCross;
-
-            if (iterationLS % 1000 == 0) {
-                System.out.println("Iteration: " + iterationLS + ", Obj: " + obj + ", Best: " + bestSol.M);
+            if (VND) {
+                applyVNDMove(mv);
+            } else {
+                makeMove(mv);
+            }
+            long t2 = System.nanoTime();
+            int obj = nodeMaxCross[allNodes[0]];
+            metrics.iteration(t1 - t0, t2 - t1, evaluations, obj);
+
+            if (VERBOSE && LOG_INTERVAL > 0 && t2 - nextLogNanos >= 0) {
+                nextLogNanos = t2 + (long) (LOG_INTERVAL * 1e9);
+                System.out.println("Iteration: " + iterationLS + ", Obj: " + obj + ", Best: " + bestSol.M
+                        + ", Iterations/s: " + (long) metrics.getIterationsPerSecond());
             }
             if (wFlag && obj < bestSol.M) {
-                System.out.println("Iteration: " + iterationLS + ", Obj: " + obj + ", Best: " + bestSol.M);
-                bestSol = new Solution(this);
+                if (VERBOSE) System.out.println("Iteration: " + iterationLS + ", Obj: " + obj + ", Best: " + bestSol.M);
+                updateBestSol();
             }
 
-            if (obj == 0) break;
+            if (obj <= TARGET_M || budgetExhausted()) break;
         }
 
-        if (allNodes.get(0).maxCross < bestSol.M) {
-            bestSol = new Solution(this);
+        if (nodeMaxCross[allNodes[0]] < bestSol.M) {
+            updateBestSol();
+        }
+    }
+
+    private void updateBestSol() {
+        Solution sol = new Solution(this);
+        bestSol = sol;
+        metrics.best(sol.timeToSol, sol.M);
+        for (SolverListener listener : listeners) {
+            listener.onImprovement(this, sol);
         }
     }
 
@@ -288,138 +925,116 @@ public class MMACSolver {
     }
 
 
-    private int calcNewPos(int mvNodePos, int mvNodeNewPos, int pos) {
-        if (mvNodePos == pos) {
-            return mvNodeNewPos;
-        } else if (mvNodePos < mvNodeNewPos) {
-            if (pos < mvNodePos || pos > mvNodeNewPos) {
-                return pos;
-            } else {
-                return pos - 1;
-            }
-        } else {
-            if (pos < mvNodeNewPos || pos > mvNodePos) {
-                return pos;
-            } else {
-                return pos + 1;
-            }
-        }
-    }
-
-
     private void calcAllNodeMaxCross() {
-        for (Node node : allNodes) {
-            calcNodeMaxCross(node);
+        for (int node = 0; node < nodeNum; ++node) {
+            nodeMaxCross[node] = calcNodeMaxCross(node);
         }
     }
 
-    private void calcNodeMaxCross(Node node) {
-        Edge maxOutEdge = node.outEdges.stream().max(Comparator.comparing(a -> a.cross)).orElse(null);
-        Edge maxInEdge = node.inEdges.stream().max(Comparator.comparing(a -> a.cross)).orElse(null);
-        if (maxOutEdge != null && maxInEdge != null) {
-            node.maxCross = Math.max(maxOutEdge.cross, maxInEdge.cross);
-        } else if (maxInEdge != null) {
-            node.maxCross = maxInEdge.cross;
-        } else if (maxOutEdge != null) {
-            node.maxCross = maxOutEdge.cross;
-        } else {
+    private int calcNodeMaxCross(int node) {
+        if (outStart[node] == outStart[node + 1] && inStart[node] == inStart[node + 1]) {
             throw new Error("Isolated Node!");
         }
+        int maxCross = 0;
+        for (int a = outStart[node]; a < outStart[node + 1]; ++a) {
+            if (maxCross < edgeCross[outEdge[a]]) maxCross = edgeCross[outEdge[a]];
+        }
+        for (int a = inStart[node]; a < inStart[node + 1]; ++a) {
+            if (maxCross < edgeCross[inEdge[a]]) maxCross = edgeCross[inEdge[a]];
+        }
+        return maxCross;
     }
 
-    private void makeMove(Move mv) {
-        ArrayList<Node> layer = layers.get(mv.node.layerID);
+    void makeMove(Move mv) {
+        int l = nodeLayer[mv.node];
+        ++layerVersion[l];
+        if (l > 0) ++layerVersion[l - 1];
+        if (l + 1 < layers.length) ++layerVersion[l + 1];
+        int[] layer = layers[l];
+        int mvNodePos = nodePos[mv.node];
         int lbIndex;
         int ubIndex;
-        if (mv.newPos > mv.node.pos) {
-            lbIndex = mv.node.pos;
+        if (mv.newPos > mvNodePos) {
+            lbIndex = mvNodePos;
             ubIndex = mv.newPos;
         } else {
             lbIndex = mv.newPos;
-            ubIndex = mv.node.pos;
-        }
-
-        for (int index = lbIndex; index < ubIndex; ++index) {
-            Node node = layer.get(index);
-            for (Edge e : node.outEdges) {
-                int iO = node.pos;
-                int iN = calcNewPos(mv.node.pos, mv.newPos, node.pos);
-                int j = e.sink.pos;
-                for (int indexP = index + 1; indexP <= ubIndex; ++indexP) {
-                    Node nodeP = layer.get(indexP);
-                    for (Edge eP : nodeP.outEdges) {
-                        int kO = nodeP.pos;
-                        int kN = calcNewPos(mv.node.pos, mv.newPos, nodeP.pos);
-                        int l = eP.sink.pos;
-                        if (j == l) continue;
-                        int delta = (isCross(iN, j, kN, l) ? 1 : 0)
-                                - (isCross(iO, j, kO, l) ? 1 : 0);
-                        e.cross += delta;
-                        eP.cross += delta;
-                    }
-                }
-            }
+            ubIndex = mvNodePos;
         }
 
-        for (int index = lbIndex; index < ubIndex; ++index) {
-            Node node = layer.get(index);
-            for (Edge e : node.inEdges) {
-                int i = e.source.pos;
-                int jO = node.pos;
-                int jN = calcNewPos(mv.node.pos, mv.newPos, node.pos);
-                for (int indexP = index + 1; indexP <= ubIndex; ++indexP) {
-                    Node nodeP = layer.get(indexP);
-                    for (Edge eP : nodeP.inEdges) {
-                        int k = eP.source.pos;
-                        if (k == i) continue;
-                        int lO = nodeP.pos;
-                        int lN = calcNewPos(mv.node.pos, mv.newPos, nodeP.pos);
-                        int delta = (isCross(i, jN, k, lN) ? 1 : 0)
-                                - (isCross(i, jO, k, lO) ? 1 : 0);
-                        e.cross += delta;
-                        eP.cross += delta;
-                    }
-                }
-            }
+        // only the order between mv.node and the nodes it passes changes
+        for (int index = lbIndex; index <= ubIndex; ++index) {
+            if (index == mvNodePos) continue;
+            swapCross(mv.node, layer[index], mvNodePos, index);
         }
 
         //resort nodes in layer
-        if (mv.newPos > mv.node.pos) {
-            for (int i = mv.node.pos; i < mv.newPos; ++i) {
-                layer.set(i, layer.get(i + 1));
-                layer.get(i).pos -= 1;
+        if (mv.newPos > mvNodePos) {
+            for (int i = mvNodePos; i < mv.newPos; ++i) {
+                layer[i] = layer[i + 1];
+                nodePos[layer[i]] -= 1;
             }
         } else {
-            for (int i = mv.node.pos; i > mv.newPos; --i) {
-                layer.set(i, layer.get(i - 1));
-                layer.get(i).pos += 1;
+            for (int i = mvNodePos; i > mv.newPos; --i) {
+                layer[i] = layer[i - 1];
+                nodePos[layer[i]] += 1;
             }
         }
-        layer.set(mv.newPos, mv.node);
-        mv.node.pos = mv.newPos;
+        layer[mv.newPos] = mv.node;
+        nodePos[mv.node] = mv.newPos;
 
         recalcNodeMaxCross(layer, lbIndex, ubIndex);
-        allNodes.sort((a, b) -> -Integer.compare(a.maxCross, b.maxCross));
     }
 
-    private void recalcNodeMaxCross(ArrayList<Node> layer, int lbIndex, int ubIndex) {
-        HashSet<Node> recalcedNode = new HashSet<>();
-        for (int i = lbIndex; i <= ubIndex; ++i) {
-            Node node = layer.get(i);
-            calcNodeMaxCross(node);
+    /***
+     * Update the crossings of the edges of node and nodeP when their relative order is reversed
+     */
+    private void swapCross(int node, int nodeP, int pos, int posP) {
+        for (int a = outStart[node]; a < outStart[node + 1]; ++a) {
+            int e = outEdge[a];
+            int j = nodePos[outNode[a]];
+            for (int b = outStart[nodeP]; b < outStart[nodeP + 1]; ++b) {
+                int l = nodePos[outNode[b]];
+                if (j == l) continue;
+                int delta = isCross(pos, j, posP, l) ? -1 : 1;
+                edgeCross[e] += delta;
+                edgeCross[outEdge[b]] += delta;
+            }
+        }
+        for (int a = inStart[node]; a < inStart[node + 1]; ++a) {
+            int e = inEdge[a];
+            int i = nodePos[inNode[a]];
+            for (int b = inStart[nodeP]; b < inStart[nodeP + 1]; ++b) {
+                int k = nodePos[inNode[b]];
+                if (k == i) continue;
+                int delta = isCross(i, pos, k, posP) ? -1 : 1;
+                edgeCross[e] += delta;
+                edgeCross[inEdge[b]] += delta;
+            }
+        }
+    }
 
-            for (Edge e : node.outEdges) {
-                Node nodeP = e.sink;
-                if (recalcedNode.contains(nodeP)) continue;
-                calcNodeMaxCross(nodeP);
-                recalcedNode.add(nodeP);
+    private void recalcNodeMaxCross(int[] layer, int lbIndex, int ubIndex) {
+        if (++recalcEpoch == 0) {
+            Arrays.fill(recalcStamp, 0);
+            recalcEpoch = 1;
+        }
+        for (int i = lbIndex; i <= ubIndex; ++i) {
+            int node = layer[i];
+            setNodeMaxCross(node, calcNodeMaxCross(node));
+
+            for (int a = outStart[node]; a < outStart[node + 1]; ++a) {
+                int nodeP = outNode[a];
+                if (recalcStamp[nodeP] == recalcEpoch) continue;
+                setNodeMaxCross(nodeP, calcNodeMaxCross(nodeP));
+                recalcStamp[nodeP] = recalcEpoch;
             }
 
-            for (Edge e : node.inEdges) {
-                Node nodeP = e.source;
-                if (recalcedNode.contains(nodeP)) continue;
-                calcNodeMaxCross(nodeP);
-                recalcedNode.add(nodeP);
+            for (int a = inStart[node]; a < inStart[node + 1]; ++a) {
+                int nodeP = inNode[a];
+                if (recalcStamp[nodeP] == recalcEpoch) continue;
+                setNodeMaxCross(nodeP, calcNodeMaxCross(nodeP));
+                recalcStamp[nodeP] = recalcEpoch;
             }
         }
     }
@@ -427,338 +1042,736 @@ public class MMACSolver {
     private void checkSolution() {
         checkAllNodesOrder();
         int M = 0;
-        for (ArrayList<Node> layer : layers) {
-            for (Node node : layer) {
-                for (Edge e : node.outEdges) {
-                    int i = e.source.pos;
-                    int j = e.sink.pos;
-                    int currCross = 0;
-                    for (Node nodeP : layer) {
-                        if (nodeP == node) continue;
-                        for (Edge eP : nodeP.outEdges) {
-                            int k = eP.source.pos;
-                            int l = eP.sink.pos;
-                            if (j == l) continue;
-                            currCross += isCross(i, j, k, l) ? 1 : 0;
-                        }
-                    }
-                    if (currCross != e.cross) {
-                        System.err.println("Edge: " + e + " currCross: " + currCross + ", e.cross: " + e.cross);
-                        throw new Error("Cross error!");
-                    }
-                    if (e.cross > e.source.maxCross || e.cross > e.sink.maxCross) {
-                        throw new Error("Cross consistency error!");
-                    }
+        int[] currCross = new int[edgeNum];
+        for (int[] layer : layers) {
+            crossingCounter.count(layer, nodePos, currCross);
+        }
+        for (int e = 0; e < edgeNum; ++e) {
+            if (currCross[e] != edgeCross[e]) {
+                System.err.println("Edge: " + edgeToString(e) + " currCross: " + currCross[e] + ", e.cross: " + edgeCross[e]);
+                throw new Error("Cross error!");
+            }
+            if (edgeCross[e] > nodeMaxCross[edgeSource[e]] || edgeCross[e] > nodeMaxCross[edgeSink[e]]) {
+                throw new Error("Cross consistency error!");
+            }
 
-                    if (M < currCross) {
-                        M = currCross;
-                    }
-                }
+            if (M < currCross[e]) {
+                M = currCross[e];
             }
         }
-        if (allNodes.get(0).maxCross != M) {
+        if (nodeMaxCross[allNodes[0]] != M) {
             throw new Error("allNodes cross record error!");
         }
+        boolean[] critical = new boolean[nodeNum];
+        for (int e = 0; e < edgeNum; ++e) {
+            if (currCross[e] == M) {
+                critical[edgeSource[e]] = true;
+                critical[edgeSink[e]] = true;
+            }
+        }
+        int limit = M > 0 ? crossRank[M - 1] : nodeNum;
+        for (int i = 0; i < nodeNum; ++i) {
+            if (critical[allNodes[i]] != i < limit) {
+                throw new Error("Critical nodes error!");
+            }
+        }
+    }
+
+    /***
+     * The nodes findMove scans with CRITICAL_ONLY, see setCRITICAL_ONLY
+     */
+    int[] criticalNodes() {
+        int currM = nodeMaxCross[allNodes[0]];
+        return Arrays.copyOf(allNodes, currM > 0 ? crossRank[currM - 1] : nodeNum);
     }
 
     private void checkAllNodesOrder() {
-        for (int i = 0; i < allNodes.size() - 1; ++i) {
-            if (allNodes.get(i).maxCross < allNodes.get(i + 1).maxCross) {
+        for (int i = 0; i < nodeNum - 1; ++i) {
+            if (nodeMaxCross[allNodes[i]] < nodeMaxCross[allNodes[i + 1]]) {
                 throw new Error("Nodes order error!");
             }
         }
+        for (int i = 0; i < nodeNum; ++i) {
+            int node = allNodes[i];
+            int maxCross = nodeMaxCross[node];
+            if (nodeIndex[node] != i || crossRank[maxCross] > i
+                    || (maxCross > 0 && crossRank[maxCross - 1] <= i)) {
+                throw new Error("Nodes index error!");
+            }
+        }
     }
 
-    private Move findMove() {
-        int currM = allNodes.get(0).maxCross;
-        Move bestMv = new Move(null, -1, Integer.MAX_VALUE);
+    /***
+     * @return the best move, a record owned by the solver that the next call overwrites
+     */
+    Move findMove() {
+        if (evalPool != null) return findMoveParallel();
+        int currM = nodeMaxCross[allNodes[0]];
+        Move bestMv = bestMove.set(-1, -1, Integer.MAX_VALUE);
         int bestCount = 0;
-        for (Node n : allNodes) {
+        boolean cache = MOVE_CACHE && cacheDelta != null;
+        if (cache && currM != cachedM) {
+            cachedM = currM;
+            ++cacheEpoch;
+        }
+        int limit = scanLimit(currM);
+        for (int i = 0; i < limit; ++i) {
             if (bestMv.delta < 0) {
                 break;
             }
-            int lbIndex = Math.max(0, n.pos - moveMaxDistance);
-            int ubIndex = Math.min(n.pos + moveMaxDistance, layers.get(n.layerID).size() - 1);
+            int n = allNodes[i];
+            int lbIndex = Math.max(0, nodePos[n] - moveMaxDistance);
+            int ubIndex = Math.min(nodePos[n] + moveMaxDistance, layers[nodeLayer[n]].length - 1);
 
-            Move move = tryMoveNeg(n, lbIndex, currM);
+            Move move;
+            if (cache) {
+                move = cachedMove(n, 0, lbIndex, currM);
+            } else {
+                evaluations += ubIndex - lbIndex;
+                move = evaluator.tryMoveNeg(n, lbIndex, currM, candidateMove);
+            }
             if(move.delta < bestMv.delta){
-                bestMv = move;
+                bestMv.set(move);
                 bestCount = 1;
             }else if(move.delta == bestMv.delta && random.nextInt(++bestCount) == 0){
-                bestMv = move;
+                bestMv.set(move);
             }
-            move = tryMovePos(n, ubIndex, currM);
+            move = cache ? cachedMove(n, 1, ubIndex, currM) : evaluator.tryMovePos(n, ubIndex, currM, candidateMove);
             if(move.delta < bestMv.delta){
-                bestMv = move;
+                bestMv.set(move);
                 bestCount = 1;
             }else if(move.delta == bestMv.delta && random.nextInt(++bestCount) == 0){
-                bestMv = move;
+                bestMv.set(move);
             }
 
         }
         return bestMv;
     }
 
-    private Move tryMoveNeg(Node node, int lbIndex, int currM){
-        Move bestMv = new Move(null, -1, Integer.MAX_VALUE);
-        int bestCount = 0;
-        ArrayList<Node> layer = layers.get(node.layerID);
-        resetTmpCross(layer, lbIndex, node.pos);
-
-        int delta = 0;
-        int nodeOldPos = node.pos;
-        for(int newIndex = node.pos - 1; newIndex >= lbIndex; --newIndex){
-            Node prevNode = layer.get(newIndex);
+    /***
+     * The best insertion if one improves, else the best block move
+     * @return the move, a record owned by the solver that the next call overwrites, see moveKind
+     */
+    private Move findVNDMove() {
+        moveKind = INSERTION;
+        Move mv = findMove();
+        if (mv.delta < 0) return mv;
+        moveKind = BLOCK;
+        return findBlockMove();
+    }
 
-            delta += calcSwapDelta(prevNode, node, prevNode.pos, prevNode.pos + 1, nodeOldPos, prevNode.pos, currM);
-            if(delta < bestMv.delta){
-                bestMv = new Move(node, newIndex, delta);
-                bestCount = 1;
-            }else if(delta == bestMv.delta && random.nextInt(++bestCount) == 0){
-                bestMv = new Move(node, newIndex, delta);
+    /***
+     * The best move of a block containing an endpoint of a critical edge, see setVND.
+     * A block move is found for the blocks starting or ending at the scanned node.
+     * @return the best move, a record owned by the solver that the next call overwrites;
+     * the size of the block is kept in moveBlockSize
+     */
+    private Move findBlockMove() {
+        int currM = nodeMaxCross[allNodes[0]];
+        Move bestMv = bestMove.set(-1, -1, Integer.MAX_VALUE);
+        tieCount = 0;
+        moveBlockSize = 0;
+        int limit = currM > 0 ? crossRank[currM - 1] : 0;
+        for (int i = 0; i < limit && bestMv.delta >= 0; ++i) {
+            int n = allNodes[i];
+            int[] layer = layers[nodeLayer[n]];
+            int pos = nodePos[n];
+            for (int size = 2; size <= MAX_BLOCK_SIZE; ++size) {
+                for (int first = pos - size + 1; first <= pos; first += size - 1) {
+                    if (first < 0 || first + size > layer.length) continue;
+                    int lbIndex = Math.max(0, first - moveMaxDistance);
+                    int ubIndex = Math.min(first + size - 1 + moveMaxDistance, layer.length - 1);
+                    // every step passes a node over the size nodes of the block
+                    evaluations += (long) size * (ubIndex - lbIndex - size + 1);
+                    if (offer(evaluator.tryBlockNeg(layer[first], size, lbIndex, currM, candidateMove), bestMv)) {
+                        moveBlockSize = size;
+                    }
+                    if (offer(evaluator.tryBlockPos(layer[first], size, ubIndex, currM, candidateMove), bestMv)) {
+                        moveBlockSize = size;
+                    }
+                }
             }
-            updateTmpCross(node);
-            updateTmpCross(prevNode);
-            nodeOldPos = newIndex;
         }
-
         return bestMv;
     }
 
+    /***
+     * Keep move in bestMv if it is better, breaking the ties uniformly at random
+     * @return whether bestMv was replaced
+     */
+    private boolean offer(Move move, Move bestMv) {
+        if (move.delta < bestMv.delta) {
+            bestMv.set(move);
+            tieCount = 1;
+            return true;
+        }
+        if (move.delta == bestMv.delta && random.nextInt(++tieCount) == 0) {
+            bestMv.set(move);
+            return true;
+        }
+        return false;
+    }
 
-    private Move tryMovePos(Node node, int ubIndex, int currM) {
-        Move bestMv = new Move(null, -1, Integer.MAX_VALUE);
-        int bestCount = 0;
-        ArrayList<Node> layer = layers.get(node.layerID);
-        resetTmpCross(layer, node.pos, ubIndex);
-
-        int delta = 0;
-        int nodeOldPos = node.pos;
-        for (int newIndex = node.pos + 1; newIndex <= ubIndex; ++newIndex) {
-            Node nextNode = layer.get(newIndex);
-
-            delta += calcSwapDelta(node, nextNode, nodeOldPos, newIndex, nextNode.pos, nextNode.pos - 1, currM);
-            if(delta < bestMv.delta){
-                bestMv = new Move(node, newIndex, delta);
-                bestCount = 1;
-            }else if(delta == bestMv.delta && random.nextInt(++bestCount)==0){
-                bestMv = new Move(node, newIndex, delta);
+    /***
+     * Make the move of findVNDMove, a block move being made as a sequence of insertions
+     */
+    private void applyVNDMove(Move mv) {
+        if (moveKind == INSERTION) {
+            makeMove(mv);
+            return;
+        }
+        int[] layer = layers[nodeLayer[mv.node]];
+        int pos = nodePos[mv.node];
+        // the nodes the block passes shift towards its old place, the block nodes not moved yet stay put
+        if (mv.newPos > pos) {
+            for (int i = moveBlockSize - 1; i >= 0; --i) {
+                makeMove(candidateMove.set(layer[pos + i], mv.newPos + i, 0));
+            }
+        } else {
+            for (int i = 0; i < moveBlockSize; ++i) {
+                makeMove(candidateMove.set(layer[pos + i], mv.newPos + i, 0));
             }
-            updateTmpCross(node);
-            updateTmpCross(nextNode);
-            nodeOldPos = newIndex;
         }
-        return bestMv;
     }
 
-    private void clearTmpDeltaCross(Node n){
-        for(Edge e: n.inEdges){
-            e.tmpDeltaCross = 0;
+    private void checkCachedMove(int n, int dir, int bound, int currM, int delta) {
+        if (debugEvaluator == null) {
+            debugEvaluator = new MoveEvaluator(new Random());
         }
-        for(Edge e: n.outEdges){
-            e.tmpDeltaCross = 0;
+        Move move = new Move(-1, -1, Integer.MAX_VALUE);
+        if (dir == 0) {
+            debugEvaluator.tryMoveNeg(n, bound, currM, move);
+        } else {
+            debugEvaluator.tryMovePos(n, bound, currM, move);
+        }
+        if (move.delta != delta) {
+            throw new Error("Move cache error! " + move + " cached delta " + delta);
         }
     }
 
-    private int calcSwapDelta(Node node, Node nextNode,
-                              int nodeOldPos, int nodeNewPos,
-                              int nextNodeOldPos, int nextNodeNewPos, int currM){
-        clearTmpDeltaCross(node);
-        clearTmpDeltaCross(nextNode);
-        for (Edge nE : nextNode.outEdges) {
-            int nextNodeToPos = nE.sink.pos;
-            for (Edge E : node.outEdges) {
-                int nodeToPos = E.sink.pos;
-                if(nextNodeToPos == nodeToPos)continue;
-//                int deltaCross = (isCross(nodeNewPos, nodeToPos, nextNodeNewPos, nextNodeToPos)?1:0)
-//                        - (isCross(nodeOldPos, nodeToPos, nextNodeOldPos, nextNodeToPos)?1:0);
-                int deltaCross = isCross(nodeOldPos, nodeToPos, nextNodeOldPos, nextNodeToPos)?-1:1;
-                E.tmpDeltaCross += deltaCross;
-                nE.tmpDeltaCross += deltaCross;
+    /***
+     * The best move of node n to the left (dir 0) up to bound or to the right (dir 1) up to bound,
+     * from the cache if it is still valid
+     */
+    private Move cachedMove(int n, int dir, int bound, int currM) {
+        int k = 2 * n + dir;
+        int version = layerVersion[nodeLayer[n]];
+        if (cacheEpochOf[k] == cacheEpoch && cacheVersion[k] == version && cacheBound[k] == bound) {
+            int newPos = cacheNewPos[k];
+            if (DEBUG) {
+                checkCachedMove(n, dir, bound, currM, cacheDelta[k]);
             }
+            return candidateMove.set(newPos < 0 ? -1 : n, newPos, cacheDelta[k]);
         }
-        for(Edge nE : nextNode.inEdges){
-            int nextNodeFromPos = nE.source.pos;
-            for (Edge E : node.inEdges){
-                int nodeFromPos = E.source.pos;
-                if(nextNodeFromPos == nodeFromPos)continue;
-//                int deltaCross = (isCross(nodeFromPos, nodeNewPos, nextNodeFromPos, nextNodeNewPos)?1:0)
-//                        - (isCross(nodeFromPos, nodeOldPos, nextNodeFromPos, nextNodeOldPos)?1:0);
-                int deltaCross = isCross(nodeFromPos, nodeOldPos, nextNodeFromPos, nextNodeOldPos)?-1:1;
-                E.tmpDeltaCross += deltaCross;
-                nE.tmpDeltaCross += deltaCross;
-            }
+        Move move;
+        if (dir == 0) {
+            evaluations += nodePos[n] - bound;
+            move = evaluator.tryMoveNeg(n, bound, currM, candidateMove);
+        } else {
+            evaluations += bound - nodePos[n];
+            move = evaluator.tryMovePos(n, bound, currM, candidateMove);
         }
+        cacheEpochOf[k] = cacheEpoch;
+        cacheVersion[k] = version;
+        cacheBound[k] = bound;
+        cacheNewPos[k] = move.newPos;
+        cacheDelta[k] = move.delta;
+        return move;
+    }
 
-        return countTmpDelta(node, nextNode, currM);
+    /***
+     * @return the number of nodes of allNodes findMove evaluates
+     */
+    private int scanLimit(int currM) {
+        return CRITICAL_ONLY && currM > 0 ? crossRank[currM - 1] : nodeNum;
     }
 
-    private void resetTmpCross(ArrayList<Node> layer, int lbIndex, int ubIndex){
-        for(int index = lbIndex; index <= ubIndex; ++index){
-            Node node = layer.get(index);
-            for (Edge e: node.outEdges){
-                e.tmpCross = e.cross;
+    private Move findMoveParallel() {
+        int currM = nodeMaxCross[allNodes[0]];
+        long tieSeed = random.nextLong();
+        Move bestMv = bestMove.set(-1, -1, Integer.MAX_VALUE);
+        int bestCount = 0;
+        int limit = scanLimit(currM);
+        for (int from = 0; from < limit && bestMv.delta >= 0; from += EVAL_BLOCK) {
+            int to = Math.min(from + EVAL_BLOCK, limit);
+            for (int i = from; i < to; ++i) {
+                int n = allNodes[i];
+                evaluations += Math.min(nodePos[n], moveMaxDistance)
+                        + Math.min(layers[nodeLayer[n]].length - 1 - nodePos[n], moveMaxDistance);
             }
-            for (Edge e:node.inEdges){
-                e.tmpCross = e.cross;
+            evalPool.invoke(new EvalTask(from, from, to, currM, tieSeed));
+            for (int k = 0; k < 2 * (to - from); ++k) {
+                if (k % 2 == 0 && bestMv.delta < 0) {
+                    break;
+                }
+                Move move = evalMoves[k];
+                if(move.delta < bestMv.delta){
+                    bestMv.set(move);
+                    bestCount = 1;
+                }else if(move.delta == bestMv.delta && random.nextInt(++bestCount) == 0){
+                    bestMv.set(move);
+                }
             }
         }
+        return bestMv;
     }
 
-    private void updateTmpCross(Node n){
-        for (Edge E : n.outEdges){
-            E.tmpCross += E.tmpDeltaCross;
+    /***
+     * Evaluate the nodes allNodes[from, to) of the block starting at blockStart
+     */
+    private class EvalTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        final int blockStart;
+        final int from;
+        final int to;
+        final int currM;
+        final long tieSeed;
+
+        EvalTask(int blockStart, int from, int to, int currM, long tieSeed) {
+            this.blockStart = blockStart;
+            this.from = from;
+            this.to = to;
+            this.currM = currM;
+            this.tieSeed = tieSeed;
         }
-        for (Edge E : n.inEdges){
-            E.tmpCross += E.tmpDeltaCross;
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new EvalTask(blockStart, from, mid, currM, tieSeed),
+                        new EvalTask(blockStart, mid, to, currM, tieSeed));
+                return;
+            }
+            MoveEvaluator ev = evaluators.get();
+            for (int i = from; i < to; ++i) {
+                int n = allNodes[i];
+                ev.random.setSeed(tieSeed ^ (n * 0x9E3779B97F4A7C15L));
+                int lbIndex = Math.max(0, nodePos[n] - moveMaxDistance);
+                int ubIndex = Math.min(nodePos[n] + moveMaxDistance, layers[nodeLayer[n]].length - 1);
+                ev.tryMoveNeg(n, lbIndex, currM, evalMoves[2 * (i - blockStart)]);
+                ev.tryMovePos(n, ubIndex, currM, evalMoves[2 * (i - blockStart) + 1]);
+            }
         }
     }
 
-    private int countTmpDelta(Node node1, Node node2, int currM){
-        int delta = 0;
-        for (Edge E : node1.outEdges){
-            delta += clacDelta(E.tmpDeltaCross, E.tmpCross, currM);
-        }
-        for(Edge E : node1.inEdges){
-            delta += clacDelta(E.tmpDeltaCross, E.tmpCross, currM);
-        }
-        for(Edge E : node2.outEdges){
-            delta += clacDelta(E.tmpDeltaCross, E.tmpCross, currM);
-        }
-        for(Edge E : node2.inEdges){
-            delta += clacDelta(E.tmpDeltaCross, E.tmpCross, currM);
+    /***
+     * The scratch state of the move evaluation: the crossings of the edges after the
+     * tentative swaps and the per-swap deltas, plus the Random used to break ties.
+     * One evaluator must not be used by two threads at the same time,
+     * the parallel evaluation gives every worker thread its own.
+     */
+    class MoveEvaluator {
+        final int[] tmpCross = new int[edgeNum];
+        final int[] tmpDeltaCross = new int[edgeNum];
+        // bitsets of the neighbour positions of the two swapped nodes and their word ranks, see swapDeltaBits
+        private final long[] nodeBits = new long[bitWords];
+        private final long[] nextBits = new long[bitWords];
+        private final int[] nodeRank = new int[bitWords];
+        private final int[] nextRank = new int[bitWords];
+        final Random random;
+
+        MoveEvaluator(Random rnd) {
+            random = rnd;
         }
-        return delta;
-    }
 
-    private int clacDelta(int deltaCross, int oriCross, int currM){
-        int delta = 0;
-        int newCross = oriCross + deltaCross;
-        if(oriCross < currM && newCross == currM){
-            delta += 1;
-        }else if (oriCross <= currM && newCross > currM){
-            delta += LAMBDA * (newCross - currM);
-        }else if(oriCross == currM && newCross < currM){
-            delta -= 1;
+        /***
+         * Find the best position of node in [lbIndex, nodePos[node]) and store it in bestMv
+         * @return bestMv
+         */
+        Move tryMoveNeg(int node, int lbIndex, int currM, Move bestMv){
+            bestMv.set(-1, -1, Integer.MAX_VALUE);
+            int bestCount = 0;
+            int[] layer = layers[nodeLayer[node]];
+            resetTmpCross(layer, lbIndex, nodePos[node]);
+
+            int delta = 0;
+            int nodeOldPos = nodePos[node];
+            for(int newIndex = nodePos[node] - 1; newIndex >= lbIndex; --newIndex){
+                int prevNode = layer[newIndex];
+
+                delta += calcSwapDelta(prevNode, node, nodePos[prevNode], nodePos[prevNode] + 1, nodeOldPos, nodePos[prevNode], currM);
+                if(delta < bestMv.delta){
+                    bestMv.set(node, newIndex, delta);
+                    bestCount = 1;
+                }else if(delta == bestMv.delta && random.nextInt(++bestCount) == 0){
+                    bestMv.set(node, newIndex, delta);
+                }
+                updateTmpCross(node);
+                updateTmpCross(prevNode);
+                nodeOldPos = newIndex;
+            }
+
+            return bestMv;
         }
-        return delta;
-    }
 
-    private void randomShufflePerturb(float strength){
-        for(ArrayList<Node> layer : layers){
-            if(layer.size() == 1)continue;
-            int startIndex = random.nextInt((int)((1.0f-strength) * layer.size()));
-            int endIndex = startIndex + (int)(strength * layer.size())+1;
 
-            Collections.shuffle(layer.subList(startIndex, endIndex), random);
-            for(int i =startIndex; i<endIndex; ++i){
-                layer.get(i).pos = i;
+        /***
+         * Find the best position of node in (nodePos[node], ubIndex] and store it in bestMv
+         * @return bestMv
+         */
+        Move tryMovePos(int node, int ubIndex, int currM, Move bestMv) {
+            bestMv.set(-1, -1, Integer.MAX_VALUE);
+            int bestCount = 0;
+            int[] layer = layers[nodeLayer[node]];
+            resetTmpCross(layer, nodePos[node], ubIndex);
+
+            int delta = 0;
+            int nodeOldPos = nodePos[node];
+            for (int newIndex = nodePos[node] + 1; newIndex <= ubIndex; ++newIndex) {
+                int nextNode = layer[newIndex];
+
+                delta += calcSwapDelta(node, nextNode, nodeOldPos, newIndex, nodePos[nextNode], nodePos[nextNode] - 1, currM);
+                if(delta < bestMv.delta){
+                    bestMv.set(node, newIndex, delta);
+                    bestCount = 1;
+                }else if(delta == bestMv.delta && random.nextInt(++bestCount)==0){
+                    bestMv.set(node, newIndex, delta);
+                }
+                updateTmpCross(node);
+                updateTmpCross(nextNode);
+                nodeOldPos = newIndex;
             }
+            return bestMv;
         }
-        initM();
-    }
-
-    private class Node {
-        int ID;
-        int layerID;
-        int pos;
 
-        int maxCross = 0;
+        /***
+         * Find the best new position in [lbIndex, nodePos[first]) of the block of size nodes starting
+         * at first and store it in bestMv, whose newPos is the new position of first.
+         * Every step to the left makes the node before the block pass all its nodes, so the delta
+         * is accumulated incrementally as for a single node.
+         * @return bestMv
+         */
+        Move tryBlockNeg(int first, int size, int lbIndex, int currM, Move bestMv){
+            bestMv.set(-1, -1, Integer.MAX_VALUE);
+            int bestCount = 0;
+            int[] layer = layers[nodeLayer[first]];
+            int pos = nodePos[first];
+            resetTmpCross(layer, lbIndex, pos + size - 1);
+
+            int delta = 0;
+            for (int newIndex = pos - 1; newIndex >= lbIndex; --newIndex) {
+                int prevNode = layer[newIndex];
+                for (int i = 0; i < size; ++i) {
+                    int blockNode = layer[pos + i];
+                    delta += calcSwapDelta(prevNode, blockNode, newIndex + i, newIndex + i + 1,
+                            newIndex + i + 1, newIndex + i, currM);
+                    updateTmpCross(prevNode);
+                    updateTmpCross(blockNode);
+                }
+                if (delta < bestMv.delta) {
+                    bestMv.set(first, newIndex, delta);
+                    bestCount = 1;
+                } else if (delta == bestMv.delta && random.nextInt(++bestCount) == 0) {
+                    bestMv.set(first, newIndex, delta);
+                }
+            }
+            return bestMv;
+        }
 
-        ArrayList<Edge> outEdges = new ArrayList<>();
-        ArrayList<Edge> inEdges = new ArrayList<>();
+        /***
+         * Find the best new position of the block of size nodes starting at first, its last node
+         * going up to ubIndex, and store it in bestMv, whose newPos is the new position of first, see tryBlockNeg
+         * @return bestMv
+         */
+        Move tryBlockPos(int first, int size, int ubIndex, int currM, Move bestMv){
+            bestMv.set(-1, -1, Integer.MAX_VALUE);
+            int bestCount = 0;
+            int[] layer = layers[nodeLayer[first]];
+            int pos = nodePos[first];
+            resetTmpCross(layer, pos, ubIndex);
+
+            int delta = 0;
+            for (int lastIndex = pos + size; lastIndex <= ubIndex; ++lastIndex) {
+                int nextNode = layer[lastIndex];
+                int newIndex = lastIndex - size + 1;
+                for (int i = size - 1; i >= 0; --i) {
+                    int blockNode = layer[pos + i];
+                    delta += calcSwapDelta(blockNode, nextNode, newIndex + i - 1, newIndex + i,
+                            newIndex + i, newIndex + i - 1, currM);
+                    updateTmpCross(blockNode);
+                    updateTmpCross(nextNode);
+                }
+                if (delta < bestMv.delta) {
+                    bestMv.set(first, newIndex, delta);
+                    bestCount = 1;
+                } else if (delta == bestMv.delta && random.nextInt(++bestCount) == 0) {
+                    bestMv.set(first, newIndex, delta);
+                }
+            }
+            return bestMv;
+        }
 
-        Node(int id, int lyid) {
-            ID = id;
-            layerID = lyid;
+        void clearTmpDeltaCross(int n){
+            for (int a = inStart[n]; a < inStart[n + 1]; ++a) {
+                tmpDeltaCross[inEdge[a]] = 0;
+            }
+            for (int a = outStart[n]; a < outStart[n + 1]; ++a) {
+                tmpDeltaCross[outEdge[a]] = 0;
+            }
         }
 
-        Node(Node cp_node){
-            ID = cp_node.ID;
-            layerID = cp_node.layerID;
-            pos = cp_node.pos;
-            maxCross = cp_node.maxCross;
-            outEdges.addAll(cp_node.outEdges);
-            inEdges.addAll(cp_node.inEdges);
+        /***
+         * Accumulate in tmpDeltaCross the change of crossings of the edges of node and nextNode
+         * when node, left of nextNode, and nextNode are swapped
+         * @return the change of the objective
+         */
+        int calcSwapDelta(int node, int nextNode,
+                                  int nodeOldPos, int nodeNewPos,
+                                  int nextNodeOldPos, int nextNodeNewPos, int currM){
+            clearTmpDeltaCross(node);
+            clearTmpDeltaCross(nextNode);
+            if (denseOut[node] && denseOut[nextNode] && useBits(node, nextNode, outStart, nodeLayer[node] + 1)) {
+                swapDeltaBits(node, nextNode, outStart, outEdge, outNode, nodeLayer[node] + 1);
+            } else {
+                for (int b = outStart[nextNode]; b < outStart[nextNode + 1]; ++b) {
+                    int nE = outEdge[b];
+                    int nextNodeToPos = nodePos[outNode[b]];
+                    for (int a = outStart[node]; a < outStart[node + 1]; ++a) {
+                        int nodeToPos = nodePos[outNode[a]];
+                        if(nextNodeToPos == nodeToPos)continue;
+        //                int deltaCross = (isCross(nodeNewPos, nodeToPos, nextNodeNewPos, nextNodeToPos)?1:0)
+        //                        - (isCross(nodeOldPos, nodeToPos, nextNodeOldPos, nextNodeToPos)?1:0);
+                        int deltaCross = isCross(nodeOldPos, nodeToPos, nextNodeOldPos, nextNodeToPos)?-1:1;
+                        tmpDeltaCross[outEdge[a]] += deltaCross;
+                        tmpDeltaCross[nE] += deltaCross;
+                    }
+                }
+            }
+            if (denseIn[node] && denseIn[nextNode] && useBits(node, nextNode, inStart, nodeLayer[node] - 1)) {
+                swapDeltaBits(node, nextNode, inStart, inEdge, inNode, nodeLayer[node] - 1);
+            } else {
+                for (int b = inStart[nextNode]; b < inStart[nextNode + 1]; ++b) {
+                    int nE = inEdge[b];
+                    int nextNodeFromPos = nodePos[inNode[b]];
+                    for (int a = inStart[node]; a < inStart[node + 1]; ++a) {
+                        int nodeFromPos = nodePos[inNode[a]];
+                        if(nextNodeFromPos == nodeFromPos)continue;
+        //                int deltaCross = (isCross(nodeFromPos, nodeNewPos, nextNodeFromPos, nextNodeNewPos)?1:0)
+        //                        - (isCross(nodeFromPos, nodeOldPos, nextNodeFromPos, nextNodeOldPos)?1:0);
+                        int deltaCross = isCross(nodeFromPos, nodeOldPos, nextNodeFromPos, nextNodeOldPos)?-1:1;
+                        tmpDeltaCross[inEdge[a]] += deltaCross;
+                        tmpDeltaCross[nE] += deltaCross;
+                    }
+                }
+            }
+
+            return countTmpDelta(node, nextNode, currM);
         }
 
-        @Override
-        public String toString() {
-            return String.valueOf(ID);
+        /***
+         * Whether the bitset kernel is cheaper than the pairwise loop for the edges of node and nextNode
+         * towards the neighbour layer: the loop costs the product of the degrees, the kernel their sum
+         * plus one step per word of the bitsets. Only called when both nodes are dense, see denseOut
+         */
+        private boolean useBits(int node, int nextNode, int[] start, int neighbourLayer) {
+            int deg = start[node + 1] - start[node];
+            int nextDeg = start[nextNode + 1] - start[nextNode];
+            int words = (layers[neighbourLayer].length + 63) >>> 6;
+            return deg * nextDeg > BIT_KERNEL_COST * (deg + nextDeg + words);
         }
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(ID);
+        /***
+         * The pairwise loop of calcSwapDelta for one side, counted with bitsets.
+         * With node left of nextNode, an edge of node whose neighbour is at position p is crossed by the edges
+         * of nextNode whose neighbour is left of p, so after the swap it gains the edges of nextNode right of p
+         * and loses those left of p; symmetrically an edge of nextNode at position q gains the edges
+         * of node left of q and loses those right of q. Neighbours at the same position never cross.
+         */
+        private void swapDeltaBits(int node, int nextNode, int[] start, int[] adjEdge, int[] adjNode, int neighbourLayer) {
+            int words = (layers[neighbourLayer].length + 63) >>> 6;
+            setBits(nodeBits, nodeRank, start, adjNode, node, words);
+            setBits(nextBits, nextRank, start, adjNode, nextNode, words);
+            int deg = start[node + 1] - start[node];
+            int nextDeg = start[nextNode + 1] - start[nextNode];
+            for (int a = start[node]; a < start[node + 1]; ++a) {
+                int p = nodePos[adjNode[a]];
+                int left = countLeft(nextBits, nextRank, p);
+                int right = nextDeg - left - (int) (nextBits[p >>> 6] >>> p & 1);
+                tmpDeltaCross[adjEdge[a]] += right - left;
+            }
+            for (int b = start[nextNode]; b < start[nextNode + 1]; ++b) {
+                int q = nodePos[adjNode[b]];
+                int left = countLeft(nodeBits, nodeRank, q);
+                int right = deg - left - (int) (nodeBits[q >>> 6] >>> q & 1);
+                tmpDeltaCross[adjEdge[b]] += left - right;
+            }
+            clearBits(nodeBits, start, adjNode, node);
+            clearBits(nextBits, start, adjNode, nextNode);
         }
 
-        @Override
-        public boolean equals(Object o) {
-            return o != null && o.getClass() == Node.class && ID == ((Node) o).ID;
+        /***
+         * Set the bits of the positions of the neighbours of n, and rank[w] to the number of bits set in the words before w
+         */
+        private void setBits(long[] bits, int[] rank, int[] start, int[] adjNode, int n, int words) {
+            for (int a = start[n]; a < start[n + 1]; ++a) {
+                int p = nodePos[adjNode[a]];
+                bits[p >>> 6] |= 1L << p;
+            }
+            int count = 0;
+            for (int w = 0; w < words; ++w) {
+                rank[w] = count;
+                count += Long.bitCount(bits[w]);
+            }
         }
-    }
 
-    private class Edge {
-        Node source;
-        Node sink;
+        private void clearBits(long[] bits, int[] start, int[] adjNode, int n) {
+            for (int a = start[n]; a < start[n + 1]; ++a) {
+                bits[nodePos[adjNode[a]] >>> 6] = 0;
+            }
+        }
 
-        int cross = 0;
-        int tmpCross = 0;
-        int tmpDeltaCross = 0;
+        /***
+         * @return the number of bits set before position p
+         */
+        private int countLeft(long[] bits, int[] rank, int p) {
+            return rank[p >>> 6] + Long.bitCount(bits[p >>> 6] & ((1L << p) - 1));
+        }
 
+        void resetTmpCross(int[] layer, int lbIndex, int ubIndex){
+            for(int index = lbIndex; index <= ubIndex; ++index){
+                int node = layer[index];
+                for (int a = outStart[node]; a < outStart[node + 1]; ++a) {
+                    tmpCross[outEdge[a]] = edgeCross[outEdge[a]];
+                }
+                for (int a = inStart[node]; a < inStart[node + 1]; ++a) {
+                    tmpCross[inEdge[a]] = edgeCross[inEdge[a]];
+                }
+            }
+        }
 
-        Edge(Node src, Node snk) {
-            source = src;
-            sink = snk;
+        void updateTmpCross(int n){
+            for (int a = outStart[n]; a < outStart[n + 1]; ++a) {
+                tmpCross[outEdge[a]] += tmpDeltaCross[outEdge[a]];
+            }
+            for (int a = inStart[n]; a < inStart[n + 1]; ++a) {
+                tmpCross[inEdge[a]] += tmpDeltaCross[inEdge[a]];
+            }
         }
 
-        @Override
-        public String toString() {
-            return "(" + source + "," + sink + ")";
+        int countTmpDelta(int node1, int node2, int currM){
+            int delta = 0;
+            for (int a = outStart[node1]; a < outStart[node1 + 1]; ++a) {
+                int e = outEdge[a];
+                delta += clacDelta(tmpDeltaCross[e], tmpCross[e], currM);
+            }
+            for (int a = inStart[node1]; a < inStart[node1 + 1]; ++a) {
+                int e = inEdge[a];
+                delta += clacDelta(tmpDeltaCross[e], tmpCross[e], currM);
+            }
+            for (int a = outStart[node2]; a < outStart[node2 + 1]; ++a) {
+                int e = outEdge[a];
+                delta += clacDelta(tmpDeltaCross[e], tmpCross[e], currM);
+            }
+            for (int a = inStart[node2]; a < inStart[node2 + 1]; ++a) {
+                int e = inEdge[a];
+                delta += clacDelta(tmpDeltaCross[e], tmpCross[e], currM);
+            }
+            return delta;
         }
+    }
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(source.ID, sink.ID);
+    private int clacDelta(int deltaCross, int oriCross, int currM){
+        int delta = 0;
+        int newCross = oriCross + deltaCross;
+        if(oriCross < currM && newCross == currM){
+            delta += 1;
+        }else if (oriCross <= currM && newCross > currM){
+            delta += LAMBDA * (newCross - currM);
+        }else if(oriCross == currM && newCross < currM){
+            delta -= 1;
         }
+        return delta;
+    }
 
-        @Override
-        public boolean equals(Object o) {
-            return o != null && o.getClass() == Edge.class
-                    && source.ID == ((Edge) o).source.ID
-                    && sink.ID == ((Edge) o).sink.ID;
+    /***
+     * Shuffle a window of strength * layer size positions in every layer.
+     * The shuffled window is applied as a sequence of moves, so only the crossings of
+     * the edges incident to the moved nodes are updated instead of recounting all of them.
+     */
+    void randomShufflePerturb(float strength){
+        Move mv = new Move(-1, -1, 0);
+        for(int[] layer : layers){
+            if(layer.length == 1)continue;
+            // with a strength above 1/2 the bound rounds to 0 on small layers, the window is then the whole layer
+            int startIndex = random.nextInt(Math.max(1, (int)((1.0f-strength) * layer.length)));
+            int endIndex = Math.min(layer.length, startIndex + (int)(strength * layer.length)+1);
+
+            int[] window = Arrays.copyOfRange(layer, startIndex, endIndex);
+            shuffle(window, 0, window.length);
+            for(int i =startIndex; i<endIndex; ++i){
+                mv.node = window[i - startIndex];
+                mv.newPos = i;
+                if (nodePos[mv.node] != i) {
+                    makeMove(mv);
+                }
+            }
         }
     }
 
-    private class Move {
-        Node node;
+    private String edgeToString(int e) {
+        return "(" + (edgeSource[e] + 1) + "," + (edgeSink[e] + 1) + ")";
+    }
+
+    class Move {
+        int node;
         int newPos;
         int delta;
 
-        Move(Node n, int p, int d) {
+        Move(int n, int p, int d) {
+            node = n;
+            newPos = p;
+            delta = d;
+        }
+
+        Move set(int n, int p, int d) {
             node = n;
             newPos = p;
             delta = d;
+            return this;
+        }
+
+        Move set(Move mv) {
+            return set(mv.node, mv.newPos, mv.delta);
         }
 
         public String toString() {
-            return "Move Node: " + node.ID + ", " + node.pos + "->" + newPos + "/" + delta;
+            return "Move Node: " + (node + 1) + ", " + nodePos[node] + "->" + newPos + "/" + delta;
         }
     }
 
-    public class Solution {
+    /***
+     * A snapshot of the layer orderings and counters of a solver; it only keeps the instance graph,
+     * not the solver, alive
+     */
+    public static class Solution {
+        private final Instance graph;
         private int M;
-        ArrayList<ArrayList<Integer>> sol;
-        HashMap<Edge, ArrayList<Edge>> crossing_edges = new HashMap<>();
-        private String instance;
+        // sol[l][p] is the node (0-based) at position p of layer l
+        int[][] sol;
+        // crossing_edges[e] lists the edges crossing edge e, built on demand
+        private int[][] crossing_edges;
         private double timeToSol;
         private int iterations;
-        private int checking_max = 0;
+        private long evaluations;
+        private int perturbations;
+        private boolean targetReached;
 
         public int getM(){
             return M;
         }
 
+        /***
+         * @return a copy of the layer orderings, the (0-based) nodes of every layer from left to right
+         */
+        public int[][] getLayers(){
+            int[][] layers = new int[sol.length][];
+            for (int l = 0; l < layers.length; ++l) {
+                layers[l] = sol[l].clone();
+            }
+            return layers;
+        }
+
         public double getTimeToSol(){
             return timeToSol;
         }
@@ -767,80 +1780,155 @@ public class MMACSolver {
             return iterations;
         }
 
+        public long getEvaluations(){
+            return evaluations;
+        }
+
+        public int getPerturbations(){
+            return perturbations;
+        }
+
+        /***
+         * @return the time in seconds at which the target M of the solver was reached, -1 if it was not
+         */
+        public double getTimeToTarget(){
+            return targetReached ? timeToSol : -1;
+        }
+
+        /***
+         * Snapshot the current layer orderings of the solver, only copying the positions and M.
+         * The full validation of the crossing counts is done in DEBUG mode only.
+         */
         Solution(MMACSolver solver) {
-            timeToSol = (System.currentTimeMillis() - startTime) / 1000.0;
-            solver.checkSolution();
-            instance = solver.instance;
-            M = allNodes.get(0).maxCross;
-            sol = new ArrayList<>(solver.layers.size());
-            for (ArrayList<Node> layer : solver.layers) {
-                ArrayList<Integer> nodes = new ArrayList<>(layer.size());
-                for (Node n : layer) {
-                    nodes.add(n.ID);
-                }
-                sol.add(nodes);
+            timeToSol = (System.currentTimeMillis() - solver.startTime) / 1000.0;
+            if (solver.DEBUG) {
+                solver.checkSolution();
+            }
+            graph = solver.graph;
+            M = solver.nodeMaxCross[solver.allNodes[0]];
+            sol = new int[solver.layers.length][];
+            for (int l = 0; l < sol.length; ++l) {
+                sol[l] = solver.layers[l].clone();
             }
             iterations = solver.iterationLS;
-            organize_crossing_map(solver.layers);
-            if(checking_max != M){
-                throw new Error("Solution error!");
-            }
-        }
-
-        private void organize_crossing_map(ArrayList<ArrayList<Node>> layers){
-            for(ArrayList<Node> layer : layers){
-                for(Node node_i : layer){
-                    int i = node_i.pos;
-                    for(Edge edge : node_i.outEdges){
-                        int j = edge.sink.pos;
-                        ArrayList<Edge> c_edges = new ArrayList<>();
-                        for(Node node_k : layer){
-                            int k = node_k.pos;
-                            for(Edge edge_cp : node_k.outEdges){
-                                int l = edge_cp.sink.pos;
+            evaluations = solver.evaluations;
+            perturbations = solver.perturbations;
+            targetReached = M <= solver.TARGET_M;
+            if (solver.DEBUG) {
+                getCrossingEdges();
+            }
+        }
+
+        /***
+         * The edges crossing every edge in this solution, computed on the first call
+         * @return the array of crossing edges of each edge id
+         */
+        public synchronized int[][] getCrossingEdges() {
+            if (crossing_edges == null) {
+                int[] pos = new int[graph.nodeNum];
+                for (int[] layer : sol) {
+                    for (int p = 0; p < layer.length; ++p) {
+                        pos[layer[p]] = p;
+                    }
+                }
+                int checking_max = organize_crossing_map(pos);
+                if(checking_max != M){
+                    throw new Error("Solution error!");
+                }
+            }
+            return crossing_edges;
+        }
+
+        private int organize_crossing_map(int[] nodePos){
+            int[] outStart = graph.outStart;
+            int[] outEdge = graph.outEdge;
+            int[] outNode = graph.outNode;
+            int checking_max = 0;
+            int[][] crossing_edges = new int[graph.edgeNum][];
+            ArrayList<Integer> c_edges = new ArrayList<>();
+            for(int[] layer : sol){
+                for(int node_i : layer){
+                    int i = nodePos[node_i];
+                    for (int a = outStart[node_i]; a < outStart[node_i + 1]; ++a) {
+                        int j = nodePos[outNode[a]];
+                        c_edges.clear();
+                        for(int node_k : layer){
+                            int k = nodePos[node_k];
+                            for (int b = outStart[node_k]; b < outStart[node_k + 1]; ++b) {
+                                int l = nodePos[outNode[b]];
                                 if(isCross(i,j,k,l)){
-                                    c_edges.add(edge_cp);
+                                    c_edges.add(outEdge[b]);
                                 }
                             }
                         }
-                        crossing_edges.put(edge, c_edges);
-                        if(checking_max<c_edges.size()){
-                            checking_max = c_edges.size();
+                        int[] crossing = new int[c_edges.size()];
+                        for (int c = 0; c < crossing.length; ++c) {
+                            crossing[c] = c_edges.get(c);
+                        }
+                        crossing_edges[outEdge[a]] = crossing;
+                        if(checking_max<crossing.length){
+                            checking_max = crossing.length;
                         }
                     }
                 }
             }
+            this.crossing_edges = crossing_edges;
+            return checking_max;
         }
 
+        /***
+         * Write the solution to sol/&lt;instance file name&gt;_sol_run&lt;run&gt;_res&lt;M&gt;.txt
+         */
         public void write(int run) throws IOException {
-            String outFile = "sol/" + instance.substring(10) + "_sol_run" + run+ "_res" + M + ".txt";
-            BufferedWriter bw = new BufferedWriter(new FileWriter(outFile));
-            bw.write(instance);
-            bw.newLine();
+            String outFile = "sol/" + new File(graph.getName()).getName() + "_sol_run" + run+ "_res" + M + ".txt";
+            try (Writer bw = new BufferedWriter(new FileWriter(outFile), 1 << 16)) {
+                write(bw);
+            }
+        }
+
+        /***
+         * Write the instance, time, iterations, objective, the layer orderings and the crossings of every edge
+         */
+        public void write(Writer bw) throws IOException {
+            bw.write(graph.getName());
+            bw.write('\n');
             bw.write("Time: " + timeToSol + " seconds\n");
             bw.write("Iterations: " + iterations + "\n");
             bw.write("Objective: " + M);
-            bw.newLine();
+            bw.write('\n');
             bw.write("Solution: \n");
-            for (ArrayList<Integer> layer : sol) {
-                for (Integer n : layer) {
-                    bw.write(n + " ");
+            for (int[] layer : sol) {
+                for (int n : layer) {
+                    bw.write(Integer.toString(n + 1));
+                    bw.write(' ');
                 }
-                bw.newLine();
+                bw.write('\n');
             }
 
             bw.write("Crossings:\n");
 
-            for(Map.Entry<Edge, ArrayList<Edge>> entry: crossing_edges.entrySet()){
-                Edge edge = entry.getKey();
-                ArrayList<Edge> c_edges = entry.getValue();
-                bw.write("\tCrossings on " + edge + ":" + c_edges.size() + "//");
-                for(Edge edge_c : c_edges){
-                    bw.write(edge_c + " ");
+            int[][] crossing_edges = getCrossingEdges();
+            for(int e = 0; e < crossing_edges.length; ++e){
+                int[] c_edges = crossing_edges[e];
+                bw.write("\tCrossings on ");
+                writeEdge(bw, e);
+                bw.write(':');
+                bw.write(Integer.toString(c_edges.length));
+                bw.write("//");
+                for(int edge_c : c_edges){
+                    writeEdge(bw, edge_c);
+                    bw.write(' ');
                 }
-                bw.write("\n");
+                bw.write('\n');
             }
-            bw.close();
+        }
+
+        private void writeEdge(Writer bw, int e) throws IOException {
+            bw.write('(');
+            bw.write(Integer.toString(graph.edgeSource[e] + 1));
+            bw.write(',');
+            bw.write(Integer.toString(graph.edgeSink[e] + 1));
+            bw.write(')');
         }
     }
 }
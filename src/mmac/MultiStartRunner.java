@@ -0,0 +1,159 @@
+package mmac;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/***
+ * Runs independent MMACSolver runs of one instance on a thread pool.
+ * Run i always uses seed i and its own solver (hence its own Random),
+ * and the solutions are returned in run order whatever the completion order is.
+ */
+public class MultiStartRunner {
+
+    private final int threads;
+    private SolverOptions options = new SolverOptions();
+    private ResultsWriter results;
+    private final CopyOnWriteArrayList<SolverListener> listeners = new CopyOnWriteArrayList<>();
+
+    public MultiStartRunner(int threads) {
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /***
+     * The options of every run; a sequential run prints its progress unless their LOG_INTERVAL is 0
+     */
+    public void setOptions(SolverOptions options){ this.options = options;}
+    /***
+     * Write the result of every run to results as soon as it is finished
+     */
+    public void setResultsWriter(ResultsWriter results){ this.results = results;}
+    /***
+     * Notify listener of the events of every run, see MMACSolver.addListener;
+     * with more than one thread it is called by the runs concurrently
+     */
+    public void addListener(SolverListener listener){ listeners.add(listener);}
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public ArrayList<MMACSolver.Solution> run(String instance, int runTimes) throws IOException {
+        return run(Instance.load(instance), runTimes);
+    }
+
+    /***
+     * All the runs share the same loaded instance
+     */
+    public ArrayList<MMACSolver.Solution> run(Instance instance, int runTimes) throws IOException {
+        if (threads == 1) {
+            ArrayList<MMACSolver.Solution> sols = new ArrayList<>(runTimes);
+            for (int i = 0; i < runTimes; ++i) {
+                System.out.println(instance.getName() + "\t run " + i);
+                sols.add(runOnce(instance, i, options.LOG_INTERVAL > 0, null, null));
+            }
+            return sols;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, runTimes));
+        // set when a run fails or run returns: the runs still going on are cancelled, and those starting cancel themselves
+        AtomicBoolean stop = new AtomicBoolean();
+        Set<MMACSolver> solvers = ConcurrentHashMap.newKeySet();
+        try {
+            ArrayList<Future<MMACSolver.Solution>> futures = new ArrayList<>(runTimes);
+            for (int i = 0; i < runTimes; ++i) {
+                final int seed = i;
+                futures.add(pool.submit(() -> {
+                    MMACSolver.Solution solution;
+                    try {
+                        solution = runOnce(instance, seed, false, stop, solvers);
+                    } catch (Throwable t) {
+                        // run throws without the solutions of the other runs, they would only keep the threads busy
+                        stop.set(true);
+                        solvers.forEach(MMACSolver::cancel);
+                        throw t;
+                    }
+                    System.out.println(instance.getName() + "\t run " + seed + "\t M: " + solution.getM()
+                            + "\t time: " + solution.getTimeToSol()
+                            + "\t iterations: " + solution.getIterations());
+                    return solution;
+                }));
+            }
+            ArrayList<MMACSolver.Solution> sols = new ArrayList<>(runTimes);
+            for (Future<MMACSolver.Solution> future : futures) {
+                sols.add(await(future));
+            }
+            return sols;
+        } finally {
+            // also reached when the caller is interrupted; no run outlives this call
+            stopAll(stop, solvers, pool);
+        }
+    }
+
+    /***
+     * @param stop when set, the run cancels itself before its solve starts, null for a sequential run
+     * @param solvers the solvers of the running runs, which this one joins while its solve is running
+     */
+    private MMACSolver.Solution runOnce(Instance instance, int seed, boolean verbose,
+                                        AtomicBoolean stop, Set<MMACSolver> solvers) throws IOException {
+        MMACSolver solver = new MMACSolver(instance, seed);
+        solver.setOptions(options);
+        solver.setVERBOSE(verbose);
+        for (SolverListener listener : listeners) {
+            solver.addListener(listener);
+        }
+        if (stop != null) {
+            // joined before checking stop, so a run that fails meanwhile either sees this solver or is seen
+            solvers.add(solver);
+            if (stop.get()) solver.cancel();
+        }
+        try {
+            solver.solve();
+        } finally {
+            if (solvers != null) solvers.remove(solver);
+        }
+        MMACSolver.Solution solution = solver.getBestSol();
+        if (results != null && solver.getStopReason() != MMACSolver.StopReason.CANCELLED) {
+            results.write(instance.getName(), seed, solution);
+        }
+        return solution;
+    }
+
+    /***
+     * Cancel the running solvers and those starting (which check stop), and wait for the threads of pool
+     * to end, even if the calling thread is interrupted, whose interrupt status is then kept
+     */
+    static void stopAll(AtomicBoolean stop, Set<MMACSolver> solvers, ExecutorService pool) {
+        stop.set(true);
+        solvers.forEach(MMACSolver::cancel);
+        pool.shutdownNow();
+        boolean interrupted = false;
+        for (;;) {
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                break;
+            } catch (InterruptedException e) {
+                // a cancelled run ends after its current local search iteration
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a run", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+}
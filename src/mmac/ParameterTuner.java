@@ -0,0 +1,503 @@
+package mmac;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/***
+ * Races candidate (MAX_MOVE_DISTANCE_DENOMINATOR, PERTURB_STRENGTH) configurations over a set of instances
+ * in one JVM, separately for every family of instances (the directory of the instance file, e.g. North).
+ *
+ * A race is a sequence of blocks: a block is one instance of the family and one seed, solved once by every
+ * configuration still in the race (so the configurations are compared on the same instance and seed).
+ * The instances of a family are visited in a shuffled order, and block b uses seed FIRST_SEED + b / (family size).
+ * From the FIRST_TEST-th block on, a Friedman test on the ranks of M within the blocks is done after every block;
+ * when it rejects the hypothesis that all the configurations are equivalent at the level ALPHA, the configurations
+ * whose rank sum is significantly worse than the best one (Conover's post-hoc test) are dropped (the F-Race).
+ * A race ends when one configuration is left or after MAX_BLOCKS blocks, and its winner is the configuration
+ * with the lowest rank sum (then the lowest total M).
+ * The blocks of all the families are solved on one thread pool, every instance is loaded only once.
+ */
+public class ParameterTuner {
+
+    private static final int FIRST_TEST = 5;
+
+    private final int threads;
+    private float[] DENOMINATORS = {0.25f, 0.5f, 1f, 2f};
+    private float[] STRENGTHS = {0.05f, 0.1f, 0.2f, 0.3f};
+    private int MAX_BLOCKS = 40;
+    private int FIRST_SEED = 0;
+    private double ALPHA = 0.05;
+    private SolverOptions options = new SolverOptions();
+
+    /***
+     * One candidate configuration
+     */
+    public static class Configuration {
+        private final float denominator;
+        private final float strength;
+
+        Configuration(float denominator, float strength) {
+            this.denominator = denominator;
+            this.strength = strength;
+        }
+
+        public float getMAX_MOVE_DISTANCE_DENOMINATOR() { return denominator; }
+        public float getPERTURB_STRENGTH() { return strength; }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "pden=%s perturb=%s", denominator, strength);
+        }
+    }
+
+    /***
+     * The outcome of the race of one family
+     */
+    public static class FamilyResult {
+        private final String family;
+        private final Configuration best;
+        private final int blocks;
+        private final int survivors;
+        private final double meanRank;
+        private final double meanM;
+
+        FamilyResult(String family, Configuration best, int blocks, int survivors, double meanRank, double meanM) {
+            this.family = family;
+            this.best = best;
+            this.blocks = blocks;
+            this.survivors = survivors;
+            this.meanRank = meanRank;
+            this.meanM = meanM;
+        }
+
+        public String getFamily() { return family; }
+        public Configuration getBest() { return best; }
+        public int getBlocks() { return blocks; }
+        /***
+         * @return the number of configurations still in the race when it ended
+         */
+        public int getSurvivors() { return survivors; }
+        /***
+         * @return the average rank of the best configuration among the configurations left (1 is the best)
+         */
+        public double getMeanRank() { return meanRank; }
+        public double getMeanM() { return meanM; }
+    }
+
+    /***
+     * The state of the race of one family
+     */
+    private class Race {
+        final String family;
+        final List<Instance> instances;
+        final int size;
+        // the configurations still in the race, in the order of configurations
+        final ArrayList<Integer> alive = new ArrayList<>();
+        // the M of the alive configurations in every block, in the order of alive
+        final ArrayList<int[]> blockMs = new ArrayList<>();
+        int blocks = 0;
+        List<Future<MMACSolver.Solution>> pending;
+
+        Race(String family, List<Instance> instances, int configurations) {
+            this.family = family;
+            this.instances = instances;
+            size = instances.size();
+            for (int c = 0; c < configurations; ++c) alive.add(c);
+        }
+
+        boolean finished() {
+            return alive.size() <= 1 || blocks >= MAX_BLOCKS;
+        }
+    }
+
+    /***
+     * @param threads the number of runs solved at the same time (0 means one per available core)
+     */
+    public ParameterTuner(int threads) {
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        options.setTIME_LIMIT(10);
+    }
+
+    /***
+     * The candidate values of each parameter; every combination is a configuration
+     */
+    public void setDENOMINATORS(float[] denominators){ DENOMINATORS = denominators.clone();}
+    public void setSTRENGTHS(float[] strengths){ STRENGTHS = strengths.clone();}
+    public void setMAX_BLOCKS(int blocks){ MAX_BLOCKS = blocks;}
+    public void setFIRST_SEED(int seed){ FIRST_SEED = seed;}
+    /***
+     * The significance level of the Friedman and post-hoc tests
+     */
+    public void setALPHA(double alpha){ ALPHA = alpha;}
+    /***
+     * The options of every run, the move distance denominator and the perturbation strength being those
+     * of its configuration; an iteration or evaluation budget makes the races reproducible
+     */
+    public void setOptions(SolverOptions options){ this.options = options;}
+
+    /***
+     * Race the configurations on every family of the instances and print the eliminations
+     * and the winner of every family
+     * @return the results in the order in which the families first appear in instances
+     */
+    public List<FamilyResult> run(List<String> instances) throws IOException {
+        ArrayList<Configuration> configurations = new ArrayList<>();
+        for (float d : DENOMINATORS) {
+            for (float s : STRENGTHS) {
+                configurations.add(new Configuration(d, s));
+            }
+        }
+        LinkedHashMap<String, List<Instance>> families = new LinkedHashMap<>();
+        for (String file : instances) {
+            families.computeIfAbsent(familyOf(file), f -> new ArrayList<>()).add(Instance.load(file));
+        }
+        Random random = new Random(FIRST_SEED);
+        ArrayList<Race> races = new ArrayList<>();
+        for (Map.Entry<String, List<Instance>> family : families.entrySet()) {
+            List<Instance> order = new ArrayList<>(family.getValue());
+            Collections.shuffle(order, random);
+            races.add(new Race(family.getKey(), order, configurations.size()));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        // set when a run fails or the races end: the runs still going on are cancelled,
+        // and those starting cancel themselves
+        AtomicBoolean stop = new AtomicBoolean();
+        Set<MMACSolver> solvers = ConcurrentHashMap.newKeySet();
+        try {
+            for (;;) {
+                boolean running = false;
+                for (Race race : races) {
+                    if (race.finished()) continue;
+                    running = true;
+                    Instance instance = race.instances.get(race.blocks % race.size);
+                    int seed = FIRST_SEED + race.blocks / race.size;
+                    race.pending = new ArrayList<>(race.alive.size());
+                    for (int c : race.alive) {
+                        Configuration configuration = configurations.get(c);
+                        race.pending.add(pool.submit(() -> {
+                            try {
+                                return runOnce(instance, seed, configuration, stop, solvers);
+                            } catch (Throwable t) {
+                                stop.set(true);
+                                solvers.forEach(MMACSolver::cancel);
+                                throw t;
+                            }
+                        }));
+                    }
+                }
+                if (!running) break;
+                for (Race race : races) {
+                    if (race.pending == null) continue;
+                    int[] ms = new int[race.alive.size()];
+                    for (int i = 0; i < ms.length; ++i) {
+                        ms[i] = MultiStartRunner.await(race.pending.get(i)).getM();
+                    }
+                    race.pending = null;
+                    race.blockMs.add(ms);
+                    ++race.blocks;
+                    if (race.blocks >= FIRST_TEST) test(race, configurations);
+                }
+            }
+        } finally {
+            // also reached when the caller is interrupted; no run outlives the races
+            MultiStartRunner.stopAll(stop, solvers, pool);
+        }
+
+        ArrayList<FamilyResult> results = new ArrayList<>(races.size());
+        for (Race race : races) {
+            int k = race.alive.size();
+            double[] rankSums = new double[k];
+            long[] mSums = new long[k];
+            for (int[] ms : race.blockMs) {
+                double[] ranks = ranks(ms);
+                for (int i = 0; i < k; ++i) {
+                    rankSums[i] += ranks[i];
+                    mSums[i] += ms[i];
+                }
+            }
+            int best = 0;
+            for (int i = 1; i < k; ++i) {
+                if (rankSums[i] < rankSums[best] || rankSums[i] == rankSums[best] && mSums[i] < mSums[best]) {
+                    best = i;
+                }
+            }
+            FamilyResult result = new FamilyResult(race.family, configurations.get(race.alive.get(best)), race.blocks,
+                    k, rankSums[best] / race.blocks, (double) mSums[best] / race.blocks);
+            results.add(result);
+            System.out.println(String.format(Locale.ROOT, "%s: best %s (mean rank %.2f, mean M %.2f, %d blocks, %d left)",
+                    result.family, result.best, result.meanRank, result.meanM, result.blocks, result.survivors));
+        }
+        return results;
+    }
+
+    /***
+     * @param stop when set, the run cancels itself before its solve starts
+     * @param solvers the solvers of the running runs, which this one joins while its solve is running
+     */
+    private MMACSolver.Solution runOnce(Instance instance, int seed, Configuration configuration,
+                                        AtomicBoolean stop, Set<MMACSolver> solvers) throws IOException {
+        MMACSolver solver = new MMACSolver(instance, seed);
+        solver.setOptions(options);
+        solver.setMAX_MOVE_DISTANCE_DENOMINATOR(configuration.denominator);
+        solver.setPERTURB_STRENGTH(configuration.strength);
+        solver.setVERBOSE(false);
+        solvers.add(solver);
+        if (stop.get()) solver.cancel();
+        try {
+            solver.solve();
+        } finally {
+            solvers.remove(solver);
+        }
+        return solver.getBestSol();
+    }
+
+    /***
+     * Drop the configurations of a race that the tests reject
+     */
+    private void test(Race race, List<Configuration> configurations) {
+        if (race.alive.size() < 2) return;
+        ArrayList<double[]> blockRanks = new ArrayList<>(race.blockMs.size());
+        for (int[] ms : race.blockMs) blockRanks.add(ranks(ms));
+        boolean[] drop = eliminate(blockRanks, race.alive.size(), ALPHA);
+        if (drop == null) return;
+
+        ArrayList<Integer> alive = new ArrayList<>();
+        StringBuilder dropped = new StringBuilder();
+        for (int i = 0; i < drop.length; ++i) {
+            if (drop[i]) {
+                dropped.append(dropped.length() == 0 ? "" : ", ").append(configurations.get(race.alive.get(i)));
+            } else {
+                alive.add(race.alive.get(i));
+            }
+        }
+        // the next tests only rank the survivors
+        for (int b = 0; b < race.blockMs.size(); ++b) {
+            int[] ms = race.blockMs.get(b);
+            int[] kept = new int[alive.size()];
+            int k = 0;
+            for (int i = 0; i < drop.length; ++i) {
+                if (!drop[i]) kept[k++] = ms[i];
+            }
+            race.blockMs.set(b, kept);
+        }
+        race.alive.clear();
+        race.alive.addAll(alive);
+        System.out.println(String.format("%s: block %d, dropped %s, %d left",
+                race.family, race.blocks, dropped, alive.size()));
+    }
+
+    /***
+     * The family of an instance file: the name of its directory
+     */
+    static String familyOf(String file) {
+        Path parent = Paths.get(file).toAbsolutePath().normalize().getParent();
+        return parent == null || parent.getFileName() == null ? "." : parent.getFileName().toString();
+    }
+
+    /***
+     * @return the ranks (from 1) of the values, ties getting the average of their ranks
+     */
+    static double[] ranks(int[] values) {
+        Integer[] order = new Integer[values.length];
+        for (int i = 0; i < order.length; ++i) order[i] = i;
+        Arrays.sort(order, Comparator.comparingInt(i -> values[i]));
+        double[] ranks = new double[values.length];
+        for (int i = 0; i < order.length; ) {
+            int j = i;
+            while (j + 1 < order.length && values[order[j + 1]] == values[order[i]]) ++j;
+            for (int t = i; t <= j; ++t) ranks[order[t]] = (i + j) / 2.0 + 1;
+            i = j + 1;
+        }
+        return ranks;
+    }
+
+    /***
+     * The Friedman test over the blocks and Conover's post-hoc comparison with the best configuration
+     * (W. J. Conover, Practical Nonparametric Statistics, 1999, as in the F-Race)
+     * @param blockRanks the ranks of the k configurations in every block
+     * @return which configurations are significantly worse than the one with the lowest rank sum,
+     * or null if the Friedman test does not reject the equivalence of all of them
+     */
+    static boolean[] eliminate(List<double[]> blockRanks, int k, double alpha) {
+        double t = friedmanStatistic(blockRanks, k);
+        if (Double.isNaN(t) || chiSquareUpperTail(t, k - 1) >= alpha) return null;
+
+        int n = blockRanks.size();
+        double[] sums = new double[k];
+        double a = 0;
+        for (double[] ranks : blockRanks) {
+            for (int j = 0; j < k; ++j) {
+                sums[j] += ranks[j];
+                a += ranks[j] * ranks[j];
+            }
+        }
+        double sumSquares = 0;
+        int best = 0;
+        for (int j = 0; j < k; ++j) {
+            sumSquares += sums[j] * sums[j];
+            if (sums[j] < sums[best]) best = j;
+        }
+        int df = (n - 1) * (k - 1);
+        double difference = studentQuantile(1 - alpha / 2, df) * Math.sqrt(2 * (n * a - sumSquares) / df);
+        boolean[] drop = new boolean[k];
+        boolean any = false;
+        for (int j = 0; j < k; ++j) {
+            drop[j] = sums[j] - sums[best] > difference;
+            any |= drop[j];
+        }
+        return any ? drop : null;
+    }
+
+    /***
+     * The Friedman statistic corrected for ties, T1 in Conover, which follows the chi-square distribution
+     * with k - 1 degrees of freedom when the configurations are equivalent
+     * @param blockRanks the ranks of the k configurations in every block
+     * @return the statistic, NaN if every block is a complete tie
+     */
+    static double friedmanStatistic(List<double[]> blockRanks, int k) {
+        int n = blockRanks.size();
+        double[] sums = new double[k];
+        double a = 0;
+        for (double[] ranks : blockRanks) {
+            for (int j = 0; j < k; ++j) {
+                sums[j] += ranks[j];
+                a += ranks[j] * ranks[j];
+            }
+        }
+        double c = n * k * (k + 1) * (k + 1) / 4.0;
+        if (a - c <= 1e-9) return Double.NaN;
+        double sumSquares = 0;
+        for (double s : sums) sumSquares += s * s;
+        return (k - 1) * (sumSquares - n * c) / (a - c);
+    }
+
+    /***
+     * @return P(X > x) for X following the chi-square distribution with df degrees of freedom
+     */
+    static double chiSquareUpperTail(double x, int df) {
+        if (x <= 0) return 1;
+        return 1 - regularizedGammaP(df / 2.0, x / 2);
+    }
+
+    /***
+     * @return the p-quantile of the Student t distribution with df degrees of freedom, for p >= 0.5
+     */
+    static double studentQuantile(double p, int df) {
+        double lo = 0;
+        double hi = 1;
+        while (studentCdf(hi, df) < p) hi *= 2;
+        for (int i = 0; i < 100; ++i) {
+            double mid = (lo + hi) / 2;
+            if (studentCdf(mid, df) < p) lo = mid; else hi = mid;
+        }
+        return (lo + hi) / 2;
+    }
+
+    private static double studentCdf(double t, int df) {
+        double tail = 0.5 * regularizedBeta(df / (df + t * t), df / 2.0, 0.5);
+        return t >= 0 ? 1 - tail : tail;
+    }
+
+    // the special functions below follow Numerical Recipes, chapter 6
+
+    private static double logGamma(double x) {
+        double[] cof = {76.18009172947146, -86.50532032941677, 24.01409824083091,
+                -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5};
+        double y = x;
+        double tmp = x + 5.5;
+        tmp -= (x + 0.5) * Math.log(tmp);
+        double ser = 1.000000000190015;
+        for (double c : cof) ser += c / ++y;
+        return -tmp + Math.log(2.5066282746310005 * ser / x);
+    }
+
+    private static double regularizedGammaP(double a, double x) {
+        if (x < a + 1) {
+            double ap = a;
+            double sum = 1 / a;
+            double del = sum;
+            for (int n = 0; n < 1000 && Math.abs(del) > Math.abs(sum) * 1e-15; ++n) {
+                del *= x / ++ap;
+                sum += del;
+            }
+            return sum * Math.exp(-x + a * Math.log(x) - logGamma(a));
+        }
+        // the continued fraction of Q
+        double b = x + 1 - a;
+        double c = 1 / 1e-300;
+        double d = 1 / b;
+        double h = d;
+        for (int i = 1; i < 1000; ++i) {
+            double an = -i * (i - a);
+            b += 2;
+            d = an * d + b;
+            if (Math.abs(d) < 1e-300) d = 1e-300;
+            c = b + an / c;
+            if (Math.abs(c) < 1e-300) c = 1e-300;
+            d = 1 / d;
+            double del = d * c;
+            h *= del;
+            if (Math.abs(del - 1) < 1e-15) break;
+        }
+        return 1 - Math.exp(-x + a * Math.log(x) - logGamma(a)) * h;
+    }
+
+    private static double regularizedBeta(double x, double a, double b) {
+        if (x <= 0) return 0;
+        if (x >= 1) return 1;
+        double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b) + a * Math.log(x) + b * Math.log(1 - x));
+        if (x < (a + 1) / (a + b + 2)) {
+            return front * betaFraction(x, a, b) / a;
+        }
+        return 1 - front * betaFraction(1 - x, b, a) / b;
+    }
+
+    private static double betaFraction(double x, double a, double b) {
+        double qab = a + b;
+        double qap = a + 1;
+        double qam = a - 1;
+        double c = 1;
+        double d = 1 - qab * x / qap;
+        if (Math.abs(d) < 1e-300) d = 1e-300;
+        d = 1 / d;
+        double h = d;
+        for (int m = 1; m < 1000; ++m) {
+            int m2 = 2 * m;
+            double aa = m * (b - m) * x / ((qam + m2) * (a + m2));
+            d = 1 + aa * d;
+            if (Math.abs(d) < 1e-300) d = 1e-300;
+            c = 1 + aa / c;
+            if (Math.abs(c) < 1e-300) c = 1e-300;
+            d = 1 / d;
+            h *= d * c;
+            aa = -(a + m) * (qab + m) * x / ((a + m2) * (qap + m2));
+            d = 1 + aa * d;
+            if (Math.abs(d) < 1e-300) d = 1e-300;
+            c = 1 + aa / c;
+            if (Math.abs(c) < 1e-300) c = 1e-300;
+            d = 1 / d;
+            double del = d * c;
+            h *= del;
+            if (Math.abs(del - 1) < 1e-15) break;
+        }
+        return h;
+    }
+
+    /***
+     * Write the best configuration of every family as CSV
+     */
+    public static void writeResults(List<FamilyResult> results, String file) throws IOException {
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(file))) {
+            bw.write("family,pden,perturb,blocks,survivors,mean_rank,mean_M\n");
+            for (FamilyResult r : results) {
+                bw.write(String.format(Locale.ROOT, "%s,%s,%s,%d,%d,%.4f,%.4f\n", r.family,
+                        r.best.denominator, r.best.strength, r.blocks, r.survivors, r.meanRank, r.meanM));
+            }
+        }
+    }
+}
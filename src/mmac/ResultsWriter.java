@@ -0,0 +1,150 @@
+package mmac;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/***
+ * Writes one row per run to a single file kept open for the whole batch,
+ * in CSV or in JSON lines depending on the extension of the file (.jsonl or .json for JSON lines).
+ * Rows are appended, and every row is flushed so a killed batch keeps the finished runs.
+ * Optionally also writes the solution of every run to its own file, gzipped or not, or only these files.
+ * All the methods can be called by concurrent runs.
+ */
+public class ResultsWriter implements Closeable {
+
+    private static final String CSV_HEADER = "instance,seed,M,time,iterations,evaluations,perturbations";
+
+    // null when only the solutions are written
+    private final Writer writer;
+    private final boolean jsonl;
+    private String solutionDir;
+    private boolean gzip;
+
+    /***
+     * A writer of the solution files only, see setSolutionDir; write then appends no row anywhere
+     */
+    public ResultsWriter() {
+        writer = null;
+        jsonl = false;
+    }
+
+    public ResultsWriter(String file) throws IOException {
+        jsonl = file.endsWith(".jsonl") || file.endsWith(".json");
+        File f = new File(file);
+        boolean empty = !f.exists() || f.length() == 0;
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(f, true), StandardCharsets.UTF_8));
+        if (!jsonl && empty) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+            writer.flush();
+        }
+    }
+
+    /***
+     * Also write the solution of every run into dir, see MMACSolver.Solution.write
+     * @param gzip whether to compress the solution files
+     */
+    public void setSolutionDir(String dir, boolean gzip) {
+        solutionDir = dir;
+        this.gzip = gzip;
+    }
+
+    /***
+     * Append the row of a run unless there is no row file, and write its solution file if setSolutionDir was called.
+     * Only the append holds the lock, so concurrent runs write their solution files in parallel.
+     */
+    public void write(String instance, int seed, MMACSolver.Solution sol) throws IOException {
+        if (writer != null) {
+            String row = row(instance, seed, sol);
+            synchronized (this) {
+                writer.write(row);
+                writer.flush();
+            }
+        }
+
+        if (solutionDir != null) {
+            writeSolution(instance, seed, sol);
+        }
+    }
+
+    private String row(String instance, int seed, MMACSolver.Solution sol) {
+        StringBuilder row = new StringBuilder();
+        if (jsonl) {
+            row.append("{\"instance\": ").append(Json.quote(instance))
+                    .append(", \"seed\": ").append(seed)
+                    .append(", \"M\": ").append(sol.getM())
+                    .append(", \"time\": ").append(sol.getTimeToSol())
+                    .append(", \"iterations\": ").append(sol.getIterations())
+                    .append(", \"evaluations\": ").append(sol.getEvaluations())
+                    .append(", \"perturbations\": ").append(sol.getPerturbations())
+                    .append("}\n");
+        } else {
+            row.append(csvField(instance))
+                    .append(',').append(seed)
+                    .append(',').append(sol.getM())
+                    .append(',').append(sol.getTimeToSol())
+                    .append(',').append(sol.getIterations())
+                    .append(',').append(sol.getEvaluations())
+                    .append(',').append(sol.getPerturbations())
+                    .append('\n');
+        }
+        return row.toString();
+    }
+
+    private void writeSolution(String instance, int seed, MMACSolver.Solution sol) throws IOException {
+        String name = new File(instance).getName() + "_sol_seed" + seed + "_res" + sol.getM() + ".txt";
+        OutputStream out = new FileOutputStream(new File(solutionDir, gzip ? name + ".gz" : name));
+        if (gzip) {
+            out = new GZIPOutputStream(out, 1 << 16);
+        }
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16)) {
+            sol.write(w);
+        }
+    }
+
+    /***
+     * Read the layer orderings back from a solution file written by MMACSolver.Solution.write, gzipped or not,
+     * e.g. for MMACSolver.setInitialLayers
+     * @return the (0-based) nodes of every layer from left to right
+     */
+    public static int[][] readLayers(String file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        if (file.endsWith(".gz")) {
+            in = new GZIPInputStream(in, 1 << 16);
+        }
+        ArrayList<int[]> layers = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16)) {
+            String line;
+            while ((line = br.readLine()) != null && !line.startsWith("Solution:")) {
+            }
+            if (line == null) {
+                throw new IOException("No solution in " + file);
+            }
+            while ((line = br.readLine()) != null && !line.startsWith("Crossings:")) {
+                String trimmed = line.trim();
+                String[] tokens = trimmed.isEmpty() ? new String[0] : trimmed.split("\\s+");
+                int[] layer = new int[tokens.length];
+                for (int p = 0; p < tokens.length; ++p) {
+                    layer[p] = Integer.parseInt(tokens[p]) - 1;
+                }
+                layers.add(layer);
+            }
+        }
+        return layers.toArray(new int[0][]);
+    }
+
+    private static String csvField(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) return s;
+        return "\"" + s.replace("\"", "\"\"") + "\"";
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+}
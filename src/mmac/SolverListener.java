@@ -0,0 +1,31 @@
+package mmac;
+
+/***
+ * Receives the events of a running MMACSolver, see MMACSolver.addListener.
+ * The methods are called on the thread running solve, between two local search
+ * iterations, so they should return quickly; a listener may call cancel or
+ * setTIME_LIMIT on the solver. The solutions passed are immutable snapshots
+ * that can be kept and handed to other threads.
+ */
+public interface SolverListener {
+
+    /***
+     * A new best solution was found, including the first one after the initialization
+     */
+    default void onImprovement(MMACSolver solver, MMACSolver.Solution best) {
+    }
+
+    /***
+     * The current solution has just been perturbed
+     * @param perturbations the number of perturbations done so far
+     */
+    default void onPerturbation(MMACSolver solver, int perturbations) {
+    }
+
+    /***
+     * The run is over, solve is about to return
+     * @param reason the stopping criterion that ended the run
+     */
+    default void onTermination(MMACSolver solver, MMACSolver.Solution best, MMACSolver.StopReason reason) {
+    }
+}
@@ -0,0 +1,184 @@
+package mmac;
+
+import java.util.Arrays;
+
+/***
+ * Counters and timers of one MMACSolver run.
+ * Only the solver thread writes them; the fields are volatile so they can be read
+ * while the run is going on, from another thread or through JMX.
+ */
+public class SolverMetrics implements SolverMetricsMBean {
+
+    private volatile long startNanos = System.nanoTime();
+    // the end of the last run, valid once ended is set
+    private volatile long endNanos;
+    private volatile boolean ended;
+    private volatile long iterations;
+    private volatile long evaluations;
+    private volatile long perturbations;
+    private volatile int currentM = Integer.MAX_VALUE;
+    private volatile int bestM = Integer.MAX_VALUE;
+    private volatile long findMoveNanos;
+    private volatile long makeMoveCount;
+    private volatile long makeMoveNanos;
+    private volatile long initMCount;
+    private volatile long initMNanos;
+    private volatile int moveDistance;
+    private volatile float perturbStrength;
+
+    // best M over time, guarded by this
+    private double[] bestTimes = new double[16];
+    private int[] bestValues = new int[16];
+    private int bestCount = 0;
+
+    /***
+     * Clear the counters and the best M history of the previous run, and start the clock
+     */
+    synchronized void start() {
+        iterations = 0;
+        evaluations = 0;
+        perturbations = 0;
+        currentM = Integer.MAX_VALUE;
+        bestM = Integer.MAX_VALUE;
+        findMoveNanos = 0;
+        makeMoveCount = 0;
+        makeMoveNanos = 0;
+        initMCount = 0;
+        initMNanos = 0;
+        moveDistance = 0;
+        perturbStrength = 0;
+        bestCount = 0;
+        ended = false;
+        startNanos = System.nanoTime();
+    }
+
+    /***
+     * Stop the clock, if it is not already stopped: the elapsed time and the iteration rate
+     * are then those of the whole run
+     */
+    void end() {
+        if (ended) return;
+        endNanos = System.nanoTime();
+        ended = true;
+    }
+
+    /***
+     * One local search iteration
+     * @param findNanos the time spent in findMove
+     * @param makeNanos the time spent in makeMove, 0 if no move was made
+     */
+    void iteration(long findNanos, long makeNanos, long evaluations, int currentM) {
+        iterations = iterations + 1;
+        findMoveNanos = findMoveNanos + findNanos;
+        if (makeNanos > 0) {
+            makeMoveCount = makeMoveCount + 1;
+            makeMoveNanos = makeMoveNanos + makeNanos;
+        }
+        this.evaluations = evaluations;
+        this.currentM = currentM;
+    }
+
+    void localSearch(int moveDistance) {
+        this.moveDistance = moveDistance;
+    }
+
+    void perturbation(float strength) {
+        perturbations = perturbations + 1;
+        perturbStrength = strength;
+    }
+
+    void initM(long nanos) {
+        initMCount = initMCount + 1;
+        initMNanos = initMNanos + nanos;
+    }
+
+    synchronized void best(double seconds, int M) {
+        bestM = M;
+        if (bestCount == bestTimes.length) {
+            bestTimes = Arrays.copyOf(bestTimes, 2 * bestCount);
+            bestValues = Arrays.copyOf(bestValues, 2 * bestCount);
+        }
+        bestTimes[bestCount] = seconds;
+        bestValues[bestCount] = M;
+        ++bestCount;
+    }
+
+    @Override
+    public long getIterations() {
+        return iterations;
+    }
+
+    @Override
+    public double getIterationsPerSecond() {
+        double seconds = getElapsedSeconds();
+        return seconds > 0 ? iterations / seconds : 0;
+    }
+
+    @Override
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    @Override
+    public long getPerturbations() {
+        return perturbations;
+    }
+
+    @Override
+    public double getElapsedSeconds() {
+        return ((ended ? endNanos : System.nanoTime()) - startNanos) / 1e9;
+    }
+
+    @Override
+    public int getCurrentM() {
+        return currentM;
+    }
+
+    @Override
+    public int getBestM() {
+        return bestM;
+    }
+
+    @Override
+    public double getFindMoveMicros() {
+        long n = iterations;
+        return n > 0 ? findMoveNanos / 1e3 / n : 0;
+    }
+
+    @Override
+    public double getMakeMoveMicros() {
+        long n = makeMoveCount;
+        return n > 0 ? makeMoveNanos / 1e3 / n : 0;
+    }
+
+    @Override
+    public double getInitMMicros() {
+        long n = initMCount;
+        return n > 0 ? initMNanos / 1e3 / n : 0;
+    }
+
+    @Override
+    public long getInitMCount() {
+        return initMCount;
+    }
+
+    @Override
+    public int getMoveDistance() {
+        return moveDistance;
+    }
+
+    @Override
+    public float getPerturbStrength() {
+        return perturbStrength;
+    }
+
+    @Override
+    public synchronized double[] getBestMTimes() {
+        return Arrays.copyOf(bestTimes, bestCount);
+    }
+
+    @Override
+    public synchronized int[] getBestMValues() {
+        return Arrays.copyOf(bestValues, bestCount);
+    }
+}
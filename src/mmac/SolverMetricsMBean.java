@@ -0,0 +1,61 @@
+package mmac;
+
+/***
+ * The JMX view of SolverMetrics, see MMACSolver.setJMX
+ */
+public interface SolverMetricsMBean {
+
+    long getIterations();
+
+    double getIterationsPerSecond();
+
+    long getEvaluations();
+
+    long getPerturbations();
+
+    /***
+     * @return the time since the start of the current run, or the duration of the last one once it has ended
+     */
+    double getElapsedSeconds();
+
+    int getCurrentM();
+
+    int getBestM();
+
+    /***
+     * @return the average time of one findMove in microseconds
+     */
+    double getFindMoveMicros();
+
+    /***
+     * @return the average time of one makeMove of the local search in microseconds
+     */
+    double getMakeMoveMicros();
+
+    /***
+     * @return the average time of one initM in microseconds
+     */
+    double getInitMMicros();
+
+    long getInitMCount();
+
+    /***
+     * @return the maximum move distance of the current local search, see MMACSolver.setADAPTIVE
+     */
+    int getMoveDistance();
+
+    /***
+     * @return the strength of the last perturbation
+     */
+    float getPerturbStrength();
+
+    /***
+     * @return the times in seconds at which the best M improved, see getBestMValues
+     */
+    double[] getBestMTimes();
+
+    /***
+     * @return the best M after each improvement
+     */
+    int[] getBestMValues();
+}
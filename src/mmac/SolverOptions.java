@@ -0,0 +1,48 @@
+package mmac;
+
+/***
+ * The options of the MMACSolver runs, set once and handed as a whole to MultiStartRunner, CooperativeSolver,
+ * BatchDriver or ParameterTuner, which apply them to every solver they create with MMACSolver.setOptions.
+ * Every option has the default and the meaning of the MMACSolver setter of the same name.
+ * The verbosity is not an option: each runner decides which of its solvers print their progress.
+ * The options must not be changed while runs using them are going on.
+ */
+public class SolverOptions {
+
+    double TIME_LIMIT = 60;
+    float PERTURB_STRENGTH = 0.1f;
+    float MAX_MOVE_DISTANCE_DENOMINATOR = 1.0f;
+    int MAX_ITERATIONS = Integer.MAX_VALUE;
+    long MAX_EVALUATIONS = Long.MAX_VALUE;
+    int TARGET_M = 0;
+    int MAX_STAGNATION = Integer.MAX_VALUE;
+    boolean MOVE_CACHE = false;
+    boolean CRITICAL_ONLY = false;
+    boolean VND = false;
+    int MAX_BLOCK_SIZE = 2;
+    boolean ADAPTIVE = false;
+    int EVAL_THREADS = 1;
+    int[][] initialLayers;
+    double LOG_INTERVAL = 1;
+    boolean JMX = false;
+
+    public void setTIME_LIMIT(double time_limit){ TIME_LIMIT = time_limit;}
+    public void setPERTURB_STRENGTH(float strength){ PERTURB_STRENGTH = strength;}
+    public void setMAX_MOVE_DISTANCE_DENOMINATOR(float d){ MAX_MOVE_DISTANCE_DENOMINATOR = d;}
+    public void setMAX_ITERATIONS(int iterations){ MAX_ITERATIONS = iterations;}
+    public void setMAX_EVALUATIONS(long evaluations){ MAX_EVALUATIONS = evaluations;}
+    public void setTARGET_M(int target){ TARGET_M = target;}
+    public void setMAX_STAGNATION(int perturbations){ MAX_STAGNATION = perturbations;}
+    public void setMOVE_CACHE(boolean cache){ MOVE_CACHE = cache;}
+    public void setCRITICAL_ONLY(boolean critical){ CRITICAL_ONLY = critical;}
+    public void setVND(boolean vnd){ VND = vnd;}
+    public void setMAX_BLOCK_SIZE(int size){ MAX_BLOCK_SIZE = size;}
+    public void setADAPTIVE(boolean adaptive){ ADAPTIVE = adaptive;}
+    public void setEVAL_THREADS(int threads){ EVAL_THREADS = threads;}
+    /***
+     * Start every run from these layer orderings instead of a random layering, see MMACSolver.setInitialLayers
+     */
+    public void setInitialLayers(int[][] layers){ initialLayers = layers;}
+    public void setLOG_INTERVAL(double interval){ LOG_INTERVAL = interval;}
+    public void setJMX(boolean jmx){ JMX = jmx;}
+}
@@ -0,0 +1,363 @@
+package mmac;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/***
+ * A long-running solver: requests are read as JSON lines from stdin or from local socket
+ * connections and solved on a bounded pool of workers, so one JVM (and its JIT-compiled code)
+ * serves any number of layouts, and the loaded instances are cached across requests.
+ *
+ * A request is a JSON object with
+ *   "id"        any string or number, echoed in the response with its JSON type (required)
+ *   "instance"  the path of the instance file, text or binary (required)
+ *   "time"      the time limit in seconds (10 by default)
+ *   "seed", "target", "iterations", "evaluations", "stagnation", "perturb", "pden"
+ *               the seed, stopping criteria and parameters of MMACSolver (all optional)
+ *   "cache"     true to use the move-delta cache, see MMACSolver.setMOVE_CACHE
+ *   "critical"  true to only move the endpoints of the critical edges, see MMACSolver.setCRITICAL_ONLY
+ *   "vnd"       true to also use the block-move neighbourhood, see MMACSolver.setVND
+ *   "adaptive"  true to tune the move distance and the perturbation strength online, see MMACSolver.setADAPTIVE
+ *   "eval"      the number of threads evaluating the moves, at most the number of cores, see MMACSolver.setEVAL_THREADS
+ *   "layers"    the layering to start from, as in a response (possibly to an earlier version of the graph),
+ *               see MMACSolver.setInitialLayers
+ *   "progress"  true to also get a line for every improvement
+ * {"id": ..., "cancel": true} stops a queued or running request early; it still gets its response,
+ * for a queued one as soon as a worker takes it, after a single local search.
+ * A field of the wrong type, or a number out of its range (or not an integer for the seed, target and budgets),
+ * gets an error response instead of being converted.
+ *
+ * The response is one line
+ *   {"id": ..., "M": 3, "time": 1.2, "iterations": 1234, "stop": "TIME_LIMIT", "layers": [[1, 2], [3, 4]]}
+ * where layers lists the (1-based) vertices of every layer from left to right,
+ * or {"id": ..., "error": "..."} if the request could not be served.
+ * Progress lines are {"id": ..., "progress": true, "M": 5, "time": 0.3}.
+ */
+public class SolverService {
+
+    private static final int CACHE_SIZE = 64;
+    // the largest integer a JSON number (a double) holds exactly
+    private static final long MAX_EXACT = 1L << 53;
+
+    private final ThreadPoolExecutor pool;
+    // running or queued requests by the JSON text of their id
+    private final ConcurrentHashMap<String, MMACSolver> requests = new ConcurrentHashMap<>();
+    // the most recently used instances, guarded by itself
+    private final LinkedHashMap<String, CachedInstance> cache = new LinkedHashMap<String, CachedInstance>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedInstance> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /***
+     * Where the responses of one client go
+     */
+    interface Responder {
+        void send(String line);
+    }
+
+    private static class CachedInstance {
+        final Instance instance;
+        final long lastModified;
+
+        CachedInstance(Instance instance, long lastModified) {
+            this.instance = instance;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /***
+     * @param workers the number of requests solved at the same time (0 means one per available core)
+     * @param queueCapacity the number of requests that can wait for a worker, the others are rejected
+     */
+    public SolverService(int workers, int queueCapacity) {
+        int threads = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity));
+    }
+
+    /***
+     * Serve the requests read from stdin until its end, then wait for all of them to be answered
+     */
+    public void serveStdin() throws IOException {
+        PrintStream out = System.out;
+        Responder responder = line -> {
+            synchronized (out) {
+                out.println(line);
+                out.flush();
+            }
+        };
+        BufferedReader br = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = br.readLine()) != null) {
+            handle(line, responder);
+        }
+        shutdown();
+    }
+
+    /***
+     * Serve the connections to a port of the loopback interface, one JSON line per request,
+     * until the process is stopped
+     */
+    public void serveSocket(int port) throws IOException {
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            System.err.println("Serving on " + server.getLocalSocketAddress());
+            for (;;) {
+                Socket socket = server.accept();
+                Thread thread = new Thread(() -> serveConnection(socket), "mmac-connection");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+    }
+
+    private void serveConnection(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader br = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             Writer writer = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+            Responder responder = line -> {
+                synchronized (writer) {
+                    try {
+                        writer.write(line);
+                        writer.write('\n');
+                        writer.flush();
+                    } catch (IOException e) {
+                        // the client is gone, its remaining responses are dropped
+                    }
+                }
+            };
+            String line;
+            while ((line = br.readLine()) != null) {
+                handle(line, responder);
+            }
+        } catch (IOException e) {
+            System.err.println("Connection closed: " + e);
+        }
+    }
+
+    /***
+     * Stop accepting requests and wait for the queued ones to be answered
+     */
+    public void shutdown() {
+        pool.shutdown();
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void handle(String line, Responder responder) {
+        if (line.trim().isEmpty()) return;
+        String id = null;
+        try {
+            Object parsed = Json.parse(line);
+            if (!(parsed instanceof Map)) {
+                throw new IllegalArgumentException("a JSON object is expected");
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Object> request = (Map<String, Object>) parsed;
+            id = idOf(request.get("id"));
+            if (flag(request, "cancel")) {
+                MMACSolver solver = requests.get(id);
+                if (solver != null) solver.cancel();
+                return;
+            }
+            submit(id, request, responder);
+        } catch (IllegalArgumentException | IOException | RejectedExecutionException e) {
+            responder.send(error(id, e.getMessage()));
+        }
+    }
+
+    /***
+     * The solver options of a request, the missing ones having their default but the time limit 10 seconds
+     */
+    private static SolverOptions options(Map<String, Object> request) {
+        SolverOptions options = new SolverOptions();
+        options.setTIME_LIMIT(real(request, "time", 10, 0, Double.MAX_VALUE));
+        options.setTARGET_M((int) integer(request, "target", 0, 0, Integer.MAX_VALUE));
+        options.setMAX_ITERATIONS((int) integer(request, "iterations", Integer.MAX_VALUE, 0, Integer.MAX_VALUE));
+        options.setMAX_EVALUATIONS(integer(request, "evaluations", Long.MAX_VALUE, 0, MAX_EXACT));
+        options.setMAX_STAGNATION((int) integer(request, "stagnation", Integer.MAX_VALUE, 0, Integer.MAX_VALUE));
+        options.setPERTURB_STRENGTH((float) real(request, "perturb", 0.1, 0, 1));
+        options.setMAX_MOVE_DISTANCE_DENOMINATOR((float) real(request, "pden", 1, 0, Float.MAX_VALUE));
+        options.setMOVE_CACHE(flag(request, "cache"));
+        options.setCRITICAL_ONLY(flag(request, "critical"));
+        options.setVND(flag(request, "vnd"));
+        options.setADAPTIVE(flag(request, "adaptive"));
+        options.setEVAL_THREADS((int) integer(request, "eval", 1, 1, Runtime.getRuntime().availableProcessors()));
+        if (request.get("layers") != null) {
+            options.setInitialLayers(layers(request.get("layers")));
+        }
+        return options;
+    }
+
+    private void submit(String id, Map<String, Object> request, Responder responder) throws IOException {
+        Object file = request.get("instance");
+        if (!(file instanceof String)) {
+            throw new IllegalArgumentException("missing instance");
+        }
+        Instance instance = load((String) file);
+        MMACSolver solver = new MMACSolver(instance, (int) integer(request, "seed", 0, Integer.MIN_VALUE, Integer.MAX_VALUE));
+        solver.setOptions(options(request));
+        solver.setVERBOSE(false);
+        if (flag(request, "progress")) {
+            solver.addListener(new SolverListener() {
+                @Override
+                public void onImprovement(MMACSolver s, MMACSolver.Solution best) {
+                    responder.send("{\"id\": " + id + ", \"progress\": true, \"M\": " + best.getM()
+                            + ", \"time\": " + best.getTimeToSol() + "}");
+                }
+            });
+        }
+
+        if (requests.putIfAbsent(id, solver) != null) {
+            throw new IllegalArgumentException("duplicate id");
+        }
+        try {
+            pool.execute(() -> {
+                try {
+                    solver.solve();
+                    responder.send(response(id, solver));
+                } catch (Throwable e) {
+                    responder.send(error(id, e.toString()));
+                } finally {
+                    requests.remove(id);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            requests.remove(id);
+            throw new RejectedExecutionException("the queue is full");
+        }
+    }
+
+    /***
+     * The instance of a file, loaded again only if the file changed since it was cached
+     */
+    private Instance load(String file) throws IOException {
+        long lastModified = new File(file).lastModified();
+        if (lastModified == 0) {
+            throw new FileNotFoundException("no such instance file " + file);
+        }
+        synchronized (cache) {
+            CachedInstance cached = cache.get(file);
+            if (cached != null && cached.lastModified == lastModified) {
+                return cached.instance;
+            }
+        }
+        Instance instance = Instance.load(file);
+        synchronized (cache) {
+            cache.put(file, new CachedInstance(instance, lastModified));
+        }
+        return instance;
+    }
+
+    /***
+     * @return the JSON text of an id, a string literal or a number written as in the request when it is an integer
+     */
+    private static String idOf(Object id) {
+        if (id instanceof String) {
+            return Json.quote((String) id);
+        }
+        if (id instanceof Double) {
+            double d = (Double) id;
+            return d == Math.rint(d) && Math.abs(d) <= MAX_EXACT ? String.valueOf((long) d) : String.valueOf(d);
+        }
+        throw new IllegalArgumentException(id == null ? "missing id" : "id must be a string or a number");
+    }
+
+    /***
+     * @return the integer value of a field within [min, max], or defaultValue if it is absent
+     */
+    private static long integer(Map<String, Object> request, String key, long defaultValue, long min, long max) {
+        Object value = request.get(key);
+        if (value == null) return defaultValue;
+        double d = value instanceof Double ? (Double) value : Double.NaN;
+        if (d != Math.rint(d) || d < min || d > max) {
+            throw new IllegalArgumentException(key + " must be an integer between " + min + " and " + max);
+        }
+        return (long) d;
+    }
+
+    /***
+     * @return the value of a field within [min, max], or defaultValue if it is absent
+     */
+    private static double real(Map<String, Object> request, String key, double defaultValue, double min, double max) {
+        Object value = request.get(key);
+        if (value == null) return defaultValue;
+        double d = value instanceof Double ? (Double) value : Double.NaN;
+        if (!(d >= min && d <= max)) {
+            throw new IllegalArgumentException(key + " must be a number between " + min + " and " + max);
+        }
+        return d;
+    }
+
+    private static boolean flag(Map<String, Object> request, String key) {
+        Object value = request.get(key);
+        if (value != null && !(value instanceof Boolean)) {
+            throw new IllegalArgumentException(key + " must be true or false");
+        }
+        return Boolean.TRUE.equals(value);
+    }
+
+    /***
+     * The (0-based) layer orderings of a JSON array of arrays of (1-based) vertices
+     */
+    private static int[][] layers(Object value) {
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException("layers must be an array of arrays");
+        }
+        List<?> list = (List<?>) value;
+        int[][] layers = new int[list.size()][];
+        for (int l = 0; l < layers.length; ++l) {
+            if (!(list.get(l) instanceof List)) {
+                throw new IllegalArgumentException("layers must be an array of arrays");
+            }
+            List<?> layer = (List<?>) list.get(l);
+            layers[l] = new int[layer.size()];
+            for (int p = 0; p < layers[l].length; ++p) {
+                Object vertex = layer.get(p);
+                double d = vertex instanceof Double ? (Double) vertex : Double.NaN;
+                if (d != Math.rint(d) || d < 1 || d > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("layers must list vertex numbers");
+                }
+                layers[l][p] = (int) d - 1;
+            }
+        }
+        return layers;
+    }
+
+    private static String response(String id, MMACSolver solver) {
+        MMACSolver.Solution sol = solver.getBestSol();
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"id\": ").append(id)
+                .append(", \"M\": ").append(sol.getM())
+                .append(", \"time\": ").append(sol.getTimeToSol())
+                .append(", \"iterations\": ").append(sol.getIterations())
+                .append(", \"stop\": ").append(Json.quote(solver.getStopReason().name()))
+                .append(", \"layers\": [");
+        for (int l = 0; l < sol.sol.length; ++l) {
+            if (l > 0) sb.append(", ");
+            sb.append('[');
+            for (int p = 0; p < sol.sol[l].length; ++p) {
+                if (p > 0) sb.append(", ");
+                sb.append(sol.sol[l][p] + 1);
+            }
+            sb.append(']');
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static String error(String id, String message) {
+        return "{\"id\": " + (id == null ? "null" : id)
+                + ", \"error\": " + Json.quote(String.valueOf(message)) + "}";
+    }
+}
@@ -0,0 +1,31 @@
+package mmac;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchDriverTest {
+
+    @Test
+    void aFailedLoadCancelsTheSubmittedRuns() {
+        SolverOptions options = new SolverOptions();
+        options.setTIME_LIMIT(60);
+        options.setTARGET_M(-1);
+        BatchDriver batch = new BatchDriver(2);
+        batch.setRUNS(2);
+        batch.setOptions(options);
+
+        long start = System.nanoTime();
+        assertThrows(IOException.class,
+                () -> batch.run(Arrays.asList("Rome/rome.49.62.58.txt", "Rome/no-such-instance.txt")));
+        assertTrue(System.nanoTime() - start < 30e9, "the runs of the first instance were not cancelled");
+        for (StackTraceElement[] stack : Thread.getAllStackTraces().values()) {
+            for (StackTraceElement frame : stack) {
+                assertNotEquals(MMACSolver.class.getName(), frame.getClassName(), "a run outlived the batch");
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package mmac;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CooperativeSolverTest {
+
+    @Test
+    void aFailedWorkerCancelsTheOthers() throws IOException {
+        Instance inst = Instance.load("Rome/rome.49.62.58.txt");
+        SolverOptions options = new SolverOptions();
+        options.setTIME_LIMIT(60);
+        options.setTARGET_M(-1);
+        CooperativeSolver coop = new CooperativeSolver(inst, 3, 0);
+        coop.setOptions(options);
+        coop.setVERBOSE(false);
+        AtomicBoolean thrown = new AtomicBoolean();
+        Map<MMACSolver, MMACSolver.StopReason> reasons = new ConcurrentHashMap<>();
+        coop.addListener(new SolverListener() {
+            @Override
+            public void onPerturbation(MMACSolver solver, int perturbations) {
+                if (perturbations == 20 && thrown.compareAndSet(false, true)) {
+                    throw new IllegalStateException("failed worker");
+                }
+            }
+
+            @Override
+            public void onTermination(MMACSolver solver, MMACSolver.Solution best, MMACSolver.StopReason reason) {
+                reasons.put(solver, reason);
+            }
+        });
+
+        long start = System.nanoTime();
+        IllegalStateException e = assertThrows(IllegalStateException.class, coop::solve);
+        assertEquals("failed worker", e.getMessage());
+        assertTrue(System.nanoTime() - start < 30e9, "the other workers were not cancelled");
+        // the failed worker does not terminate, the 2 others were cancelled
+        assertEquals(2, reasons.size(), reasons.toString());
+        for (MMACSolver.StopReason reason : reasons.values()) {
+            assertEquals(MMACSolver.StopReason.CANCELLED, reason);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package mmac;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class CrossingCounterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void countsLikeThePairwiseComparison() throws IOException {
+        int[][] shapes = {{1, 1}, {2, 3}, {5, 5, 5}, {30, 7, 40}, {60, 60}};
+        int[] arcs = {1, 4, 12, 90, 600};
+        for (int s = 0; s < shapes.length; ++s) {
+            for (long seed = 0; seed < 5; ++seed) {
+                Instance inst = Instance.load(TestInstances.write(dir, "i" + s + "_" + seed + ".txt",
+                        shapes[s], arcs[s], seed).toString());
+                Random random = new Random(seed);
+                int[] nodePos = new int[inst.nodeNum];
+                int[][] layers = new int[inst.getLayerNum()][];
+                for (int l = 0; l < layers.length; ++l) {
+                    layers[l] = new int[inst.getLayerSize(l)];
+                    for (int p = 0; p < layers[l].length; ++p) {
+                        layers[l][p] = inst.getFirstNode(l) + p;
+                    }
+                    for (int p = layers[l].length - 1; p > 0; --p) {
+                        int q = random.nextInt(p + 1);
+                        int tmp = layers[l][p];
+                        layers[l][p] = layers[l][q];
+                        layers[l][q] = tmp;
+                    }
+                    for (int p = 0; p < layers[l].length; ++p) {
+                        nodePos[layers[l][p]] = p;
+                    }
+                }
+
+                CrossingCounter counter = new CrossingCounter(inst.outStart, inst.outEdge, inst.outNode,
+                        inst.maxLayerSize);
+                int[] cross = new int[inst.edgeNum];
+                for (int[] layer : layers) {
+                    counter.count(layer, nodePos, cross);
+                }
+                assertArrayEquals(bruteForce(inst, nodePos), cross, "shape " + s + ", seed " + seed);
+            }
+        }
+    }
+
+    static int[] bruteForce(Instance inst, int[] nodePos) {
+        int[] layer = new int[inst.nodeNum];
+        for (int l = 0; l < inst.getLayerNum(); ++l) {
+            for (int p = 0; p < inst.getLayerSize(l); ++p) {
+                layer[inst.getFirstNode(l) + p] = l;
+            }
+        }
+        int[] cross = new int[inst.edgeNum];
+        for (int e = 0; e < inst.edgeNum; ++e) {
+            for (int f = 0; f < inst.edgeNum; ++f) {
+                if (layer[inst.edgeSource[e]] == layer[inst.edgeSource[f]]
+                        && MMACSolver.isCross(nodePos[inst.edgeSource[e]], nodePos[inst.edgeSink[e]],
+                        nodePos[inst.edgeSource[f]], nodePos[inst.edgeSink[f]])) {
+                    ++cross[e];
+                }
+            }
+        }
+        return cross;
+    }
+}
@@ -0,0 +1,81 @@
+package mmac;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstanceIOTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void binaryRoundTripKeepsTheInstance() throws IOException {
+        Path text = TestInstances.write(dir, "a.txt", new int[]{3, 8, 1, 5}, 20, 1);
+        Path binary = dir.resolve("a.bin");
+        InstanceIO.InstanceData expected = InstanceIO.read(text.toString());
+        InstanceIO.writeBinary(expected, binary.toString());
+        InstanceIO.InstanceData actual = InstanceIO.read(binary.toString());
+
+        assertEquals(expected.nodeNum, actual.nodeNum);
+        assertEquals(expected.edgeNum, actual.edgeNum);
+        assertArrayEquals(expected.layerSizes, actual.layerSizes);
+        assertArrayEquals(expected.edgeSource, actual.edgeSource);
+        assertArrayEquals(expected.edgeSink, actual.edgeSink);
+    }
+
+    @Test
+    void binaryFilesAreRecognisedByTheirMagic() throws IOException {
+        Path text = TestInstances.write(dir, "b.txt", new int[]{2, 2}, 3, 2);
+        // a misleading extension does not matter
+        Path binary = dir.resolve("b.txt.copy");
+        InstanceIO.writeBinary(InstanceIO.read(text.toString()), binary.toString());
+        Instance inst = Instance.load(binary.toString());
+        assertEquals(4, inst.getNodeNum());
+        assertEquals(3, inst.getEdgeNum());
+        assertEquals(2, inst.getLayerNum());
+    }
+
+    @Test
+    void textAcceptsAnyWhitespace() throws IOException {
+        Path file = dir.resolve("ws.txt");
+        Files.write(file, "3 2\t2\r\n1   2\n\n1 3\t\t2\r\n3".getBytes(StandardCharsets.US_ASCII));
+        InstanceIO.InstanceData data = InstanceIO.read(file.toString());
+        assertEquals(3, data.nodeNum);
+        assertArrayEquals(new int[]{1, 2}, data.layerSizes);
+        assertArrayEquals(new int[]{0, 1}, data.edgeSource);
+        assertArrayEquals(new int[]{2, 2}, data.edgeSink);
+    }
+
+    @Test
+    void malformedFilesAreRejected() throws IOException {
+        Path letter = dir.resolve("letter.txt");
+        Files.write(letter, "3 2 2\n1 x\n".getBytes(StandardCharsets.US_ASCII));
+        assertThrows(IOException.class, () -> InstanceIO.read(letter.toString()));
+
+        Path shortText = dir.resolve("short.txt");
+        Files.write(shortText, "3 2 2\n1 2\n1 3\n".getBytes(StandardCharsets.US_ASCII));
+        assertThrows(IOException.class, () -> InstanceIO.read(shortText.toString()));
+
+        // 2^32 + 3 would wrap around to 3
+        Path overflow = dir.resolve("overflow.txt");
+        Files.write(overflow, "4294967299 2 2\n1 2\n1 3\n2 3\n".getBytes(StandardCharsets.US_ASCII));
+        IOException e = assertThrows(IOException.class, () -> InstanceIO.read(overflow.toString()));
+        assertTrue(e.getMessage().contains("number too large"), e.getMessage());
+
+        Path text = TestInstances.write(dir, "c.txt", new int[]{4, 4}, 6, 3);
+        Path binary = dir.resolve("c.bin");
+        InstanceIO.writeBinary(InstanceIO.read(text.toString()), binary.toString());
+        byte[] bytes = Files.readAllBytes(binary);
+        Path truncated = dir.resolve("truncated.bin");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 4));
+        assertThrows(IOException.class, () -> InstanceIO.read(truncated.toString()));
+    }
+}
@@ -0,0 +1,74 @@
+package mmac;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstanceTest {
+
+    @TempDir
+    Path dir;
+
+    /***
+     * The CSR arrays must list, for every node, the edges of the file that leave (enter) it, in file order
+     */
+    private static void checkAdjacency(Path file, boolean multiEdges) throws IOException {
+        Instance inst = Instance.load(file.toString());
+        String[] tokens = new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim().split("\\s+");
+        int nodeNum = Integer.parseInt(tokens[0]);
+        int edgeNum = Integer.parseInt(tokens[1]);
+        int layerNum = Integer.parseInt(tokens[2]);
+        assertEquals(nodeNum, inst.nodeNum);
+        assertEquals(edgeNum, inst.edgeNum);
+        assertEquals(multiEdges, inst.multiEdges);
+
+        List<List<Integer>> out = new ArrayList<>();
+        List<List<Integer>> in = new ArrayList<>();
+        for (int n = 0; n < nodeNum; ++n) {
+            out.add(new ArrayList<>());
+            in.add(new ArrayList<>());
+        }
+        for (int e = 0; e < edgeNum; ++e) {
+            int source = Integer.parseInt(tokens[3 + layerNum + 2 * e]) - 1;
+            int sink = Integer.parseInt(tokens[4 + layerNum + 2 * e]) - 1;
+            assertEquals(source, inst.edgeSource[e]);
+            assertEquals(sink, inst.edgeSink[e]);
+            out.get(source).add(e);
+            in.get(sink).add(e);
+        }
+
+        assertEquals(0, inst.outStart[0]);
+        assertEquals(0, inst.inStart[0]);
+        for (int n = 0; n < nodeNum; ++n) {
+            assertEquals(out.get(n).size(), inst.outStart[n + 1] - inst.outStart[n], "out degree of " + n);
+            for (int k = 0; k < out.get(n).size(); ++k) {
+                int e = out.get(n).get(k);
+                assertEquals(e, inst.outEdge[inst.outStart[n] + k]);
+                assertEquals(inst.edgeSink[e], inst.outNode[inst.outStart[n] + k]);
+            }
+            assertEquals(in.get(n).size(), inst.inStart[n + 1] - inst.inStart[n], "in degree of " + n);
+            for (int k = 0; k < in.get(n).size(); ++k) {
+                int e = in.get(n).get(k);
+                assertEquals(e, inst.inEdge[inst.inStart[n] + k]);
+                assertEquals(inst.edgeSource[e], inst.inNode[inst.inStart[n] + k]);
+            }
+        }
+    }
+
+    @Test
+    void theAdjacencyListsTheEdgesOfTheFile() throws IOException {
+        checkAdjacency(Paths.get("Rome/rome.49.62.58.txt"), false);
+        checkAdjacency(Paths.get("North/north.40.131.15.txt"), false);
+        checkAdjacency(TestInstances.write(dir, "multi.txt", new int[]{5, 8, 6, 7}, 40, 2), true);
+        checkAdjacency(TestInstances.writeSimple(dir, "simple.txt", new int[]{5, 8, 6, 7}, 0.5, 2), false);
+    }
+}
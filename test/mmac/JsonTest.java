@@ -0,0 +1,45 @@
+package mmac;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonTest {
+
+    @Test
+    void parsesNestedValues() {
+        Object parsed = Json.parse(" {\"a\": [1, -2.5, 3e2, true, false, null], \"b\": {}, \"c\": []} ");
+        Map<?, ?> map = (Map<?, ?>) parsed;
+        assertEquals(Arrays.asList(1.0, -2.5, 300.0, true, false, null), map.get("a"));
+        assertTrue(((Map<?, ?>) map.get("b")).isEmpty());
+        assertTrue(((List<?>) map.get("c")).isEmpty());
+        assertEquals(Arrays.asList("a", "b", "c"), Arrays.asList(map.keySet().toArray()));
+        assertEquals(Arrays.asList(0.0, -0.0, -5e-4, 100.0, 1e-2), Json.parse("[0, -0, -0.5e-3, 1E+2, 10e-3]"));
+    }
+
+    @Test
+    void decodesEscapes() {
+        assertEquals("q\"b\\s/n\nr\rt\tb\bf\fé", Json.parse("\"q\\\"b\\\\s\\/n\\nr\\rt\\tb\\bf\\f\\u00e9\""));
+    }
+
+    @Test
+    void quoteRoundTrips() {
+        String s = "tab\t, quote \", backslash \\, newline \n, bell \u0007, é";
+        String quoted = Json.quote(s);
+        assertEquals("\"tab\\t, quote \\\", backslash \\\\, newline \\n, bell \\u0007, é\"", quoted);
+        assertEquals(s, Json.parse(quoted));
+    }
+
+    @Test
+    void rejectsMalformedInput() {
+        String[] malformed = {"", "{", "[1, 2", "{\"a\" 1}", "{a: 1}", "[1,]", "\"open", "\"\\u12\"",
+                "tru", "nul", "1 2", "{\"a\": 1} x", "-", "1e", "NaN", "+1", "[+1]", "01", "1.", ".5", "-.5", "1e+", "0x1"};
+        for (String text : malformed) {
+            assertThrows(IllegalArgumentException.class, () -> Json.parse(text), text);
+        }
+    }
+}
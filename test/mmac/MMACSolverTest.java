@@ -0,0 +1,410 @@
+package mmac;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class MMACSolverTest {
+
+    @TempDir
+    Path dir;
+
+    private static MMACSolver solver(Instance inst, int seed, int iterations) {
+        MMACSolver solver = new MMACSolver(inst, seed);
+        solver.setVERBOSE(false);
+        solver.setTIME_LIMIT(60);
+        solver.setTARGET_M(-1);
+        solver.setMAX_ITERATIONS(iterations);
+        return solver;
+    }
+
+    @Test
+    void strongPerturbationsOnTwoNodeLayers() throws IOException {
+        Instance inst = Instance.load(TestInstances.write(dir, "small.txt", new int[]{2, 3, 2, 5, 2}, 8, 1).toString());
+        for (float strength : new float[]{0.5f, 0.6f, 0.9f, 1f}) {
+            MMACSolver solver = solver(inst, 0, 200);
+            solver.setPERTURB_STRENGTH(strength);
+            solver.setDEBUG(true);
+            solver.solve();
+            assertEquals(MMACSolver.StopReason.ITERATIONS, solver.getStopReason(), "strength " + strength);
+        }
+    }
+
+    @Test
+    void adaptiveModeWithAHighStrength() throws IOException {
+        // the first layer of this instance has 2 nodes, and the adaptive mode tries up to twice the strength
+        Instance inst = Instance.load("Rome/rome.49.62.58.txt");
+        MMACSolver solver = solver(inst, 0, 3000);
+        solver.setPERTURB_STRENGTH(0.3f);
+        solver.setADAPTIVE(true);
+        solver.solve();
+        assertEquals(MMACSolver.StopReason.ITERATIONS, solver.getStopReason());
+        assertTrue(solver.getMetrics().getPerturbations() > 100);
+    }
+
+    @Test
+    void solveTwice() throws IOException {
+        Instance inst = Instance.load("Rome/rome.49.62.58.txt");
+        MMACSolver solver = solver(inst, 0, 2000);
+        for (int run = 0; run < 2; ++run) {
+            solver.solve();
+            assertEquals(MMACSolver.StopReason.ITERATIONS, solver.getStopReason(), "run " + run);
+            SolverMetrics metrics = solver.getMetrics();
+            assertTrue(metrics.getIterations() > 0 && metrics.getIterations() <= 2000, "run " + run);
+            assertTrue(metrics.getPerturbations() > 0 && metrics.getPerturbations() < 2000, "run " + run);
+            // the history of the best M starts over with the run
+            double[] bestTimes = metrics.getBestMTimes();
+            int[] bestValues = metrics.getBestMValues();
+            for (int i = 1; i < bestValues.length; ++i) {
+                assertTrue(bestTimes[i - 1] <= bestTimes[i] && bestValues[i - 1] > bestValues[i], "run " + run);
+            }
+            assertEquals(solver.getObj(), bestValues[bestValues.length - 1], "run " + run);
+            assertEquals(solver.getObj(), metrics.getBestM(), "run " + run);
+        }
+    }
+
+    @Test
+    void solveAfterACancel() throws IOException {
+        Instance inst = Instance.load("Rome/rome.49.62.58.txt");
+        MMACSolver solver = solver(inst, 0, 2000);
+        SolverListener cancelAtTen = new SolverListener() {
+            @Override
+            public void onPerturbation(MMACSolver s, int perturbations) {
+                if (perturbations == 10) s.cancel();
+            }
+        };
+        solver.addListener(cancelAtTen);
+        solver.solve();
+        assertEquals(MMACSolver.StopReason.CANCELLED, solver.getStopReason());
+        assertEquals(10, solver.getMetrics().getPerturbations());
+
+        solver.removeListener(cancelAtTen);
+        solver.solve();
+        assertEquals(MMACSolver.StopReason.ITERATIONS, solver.getStopReason());
+        assertTrue(solver.getMetrics().getPerturbations() > 10);
+    }
+
+    @Test
+    void theEvaluationThreadsDoNotChangeTheTrajectory() throws IOException {
+        Instance inst = Instance.load("Rome/rome.49.62.58.txt");
+        MMACSolver.Solution[] sols = new MMACSolver.Solution[2];
+        for (int k = 0; k < 2; ++k) {
+            SolverOptions options = new SolverOptions();
+            options.setTIME_LIMIT(60);
+            options.setTARGET_M(-1);
+            options.setMAX_ITERATIONS(1000);
+            options.setEVAL_THREADS(2 + k);
+            MMACSolver solver = new MMACSolver(inst, 3);
+            solver.setOptions(options);
+            solver.setVERBOSE(false);
+            solver.solve();
+            sols[k] = solver.getBestSol();
+        }
+        assertEquals(sols[0].getM(), sols[1].getM());
+        assertEquals(sols[0].getIterations(), sols[1].getIterations());
+        // the evaluations differ, as the scan evaluates blocks of 4 * threads nodes
+        assertArrayEquals(sols[0].getLayers(), sols[1].getLayers());
+    }
+
+    @Test
+    void theCriticalNodesAreTheEndpointsOfTheCriticalEdges() throws IOException {
+        Instance inst = Instance.load(TestInstances.write(dir, "c.txt", new int[]{6, 9, 7, 8, 5}, 40, 5).toString());
+        for (int mode = 0; mode < 3; ++mode) {
+            MMACSolver solver = solver(inst, mode, 300);
+            solver.setCRITICAL_ONLY(mode > 0);
+            solver.setVND(mode == 2);
+            solver.setDEBUG(true);
+            int[] checks = {0};
+            solver.addListener(new SolverListener() {
+                @Override
+                public void onImprovement(MMACSolver s, MMACSolver.Solution best) {
+                    check(s);
+                }
+
+                @Override
+                public void onPerturbation(MMACSolver s, int perturbations) {
+                    check(s);
+                }
+
+                private void check(MMACSolver s) {
+                    int[] cross = CrossingCounterTest.bruteForce(inst, s.nodePos);
+                    int M = Arrays.stream(cross).max().getAsInt();
+                    TreeSet<Integer> endpoints = new TreeSet<>();
+                    for (int e = 0; e < inst.edgeNum; ++e) {
+                        if (cross[e] == M) {
+                            endpoints.add(inst.edgeSource[e]);
+                            endpoints.add(inst.edgeSink[e]);
+                        }
+                    }
+                    TreeSet<Integer> critical = new TreeSet<>();
+                    for (int node : s.criticalNodes()) critical.add(node);
+                    assertEquals(endpoints, critical);
+                    ++checks[0];
+                }
+            });
+            solver.solve();
+            assertTrue(checks[0] > 10, "mode " + mode);
+        }
+    }
+
+    /***
+     * A Random whose bounded ints are all 0, without advancing its sequence: a tie is always broken
+     * in favour of the last move, however many ties were drawn
+     */
+    private static class LastTie extends Random {
+        LastTie(long seed) {
+            super(seed);
+        }
+
+        @Override
+        public int nextInt(int bound) {
+            return 0;
+        }
+    }
+
+    @Test
+    void theMoveCacheKeepsTheTrajectory() throws IOException {
+        Instance inst = Instance.load("Rome/rome.49.62.58.txt");
+        List<List<Integer>> improvements = new ArrayList<>();
+        MMACSolver.Solution[] sols = new MMACSolver.Solution[2];
+        for (int k = 0; k < 2; ++k) {
+            MMACSolver solver = new MMACSolver(inst, 5, new LastTie(5));
+            solver.setVERBOSE(false);
+            solver.setTIME_LIMIT(60);
+            solver.setTARGET_M(-1);
+            solver.setMAX_ITERATIONS(3000);
+            solver.setMOVE_CACHE(k == 1);
+            // checks every cached move against a fresh evaluation
+            solver.setDEBUG(k == 1);
+            List<Integer> ms = new ArrayList<>();
+            solver.addListener(new SolverListener() {
+                @Override
+                public void onImprovement(MMACSolver s, MMACSolver.Solution best) {
+                    ms.add(best.getM());
+                    ms.add(best.getIterations());
+                }
+            });
+            solver.solve();
+            improvements.add(ms);
+            sols[k] = solver.getBestSol();
+        }
+        assertTrue(improvements.get(0).size() > 4, improvements.get(0).toString());
+        assertEquals(improvements.get(0), improvements.get(1));
+        assertEquals(sols[0].getM(), sols[1].getM());
+        assertEquals(sols[0].getPerturbations(), sols[1].getPerturbations());
+        assertTrue(Arrays.deepEquals(sols[0].getLayers(), sols[1].getLayers()));
+        // the cache saves evaluations
+        assertTrue(sols[1].getEvaluations() < sols[0].getEvaluations());
+    }
+
+    @Test
+    void theMetricsStopWithTheRun() throws IOException, InterruptedException {
+        Instance inst = Instance.load("Rome/rome.49.62.58.txt");
+        MMACSolver solver = solver(inst, 0, 500);
+        double[] atTermination = new double[1];
+        solver.addListener(new SolverListener() {
+            @Override
+            public void onTermination(MMACSolver s, MMACSolver.Solution best, MMACSolver.StopReason reason) {
+                atTermination[0] = s.getMetrics().getElapsedSeconds();
+            }
+        });
+        solver.solve();
+        SolverMetrics metrics = solver.getMetrics();
+        double elapsed = metrics.getElapsedSeconds();
+        double rate = metrics.getIterationsPerSecond();
+        Thread.sleep(50);
+        assertEquals(atTermination[0], elapsed);
+        assertEquals(elapsed, metrics.getElapsedSeconds());
+        assertEquals(rate, metrics.getIterationsPerSecond());
+        assertEquals(metrics.getIterations() / elapsed, rate, 1e-9 * rate);
+    }
+
+    /***
+     * The maxCross of every node, from a brute-force count of the crossings of the current layering of s
+     */
+    private static int[] maxCross(Instance inst, MMACSolver s) {
+        int[] cross = CrossingCounterTest.bruteForce(inst, s.nodePos);
+        int[] max = new int[inst.nodeNum];
+        for (int e = 0; e < inst.edgeNum; ++e) {
+            max[inst.edgeSource[e]] = Math.max(max[inst.edgeSource[e]], cross[e]);
+            max[inst.edgeSink[e]] = Math.max(max[inst.edgeSink[e]], cross[e]);
+        }
+        return max;
+    }
+
+    @Test
+    void allNodesMatchesAFullSortAfterRandomMoves() throws IOException {
+        Instance inst = Instance.load(TestInstances.write(dir, "m.txt", new int[]{6, 9, 7, 8, 5}, 40, 6).toString());
+        MMACSolver solver = solver(inst, 0, 1);
+        solver.init();
+        Random random = new Random(1);
+        for (int k = 0; k < 2000; ++k) {
+            int node = random.nextInt(inst.nodeNum);
+            int newPos = random.nextInt(solver.layers[solver.nodeLayer[node]].length);
+            if (newPos == solver.nodePos[node]) continue;
+            solver.makeMove(solver.new Move(node, newPos, 0));
+
+            int[] expected = maxCross(inst, solver);
+            assertArrayEquals(expected, solver.nodeMaxCross);
+            int[] nodes = solver.allNodes.clone();
+            Arrays.sort(nodes);
+            for (int n = 0; n < inst.nodeNum; ++n) assertEquals(n, nodes[n]);
+            // the maxCross in the order of allNodes are those of a full sort, ties aside
+            int[] sorted = expected.clone();
+            Arrays.sort(sorted);
+            for (int i = 0; i < inst.nodeNum; ++i) {
+                assertEquals(sorted[inst.nodeNum - 1 - i], solver.nodeMaxCross[solver.allNodes[i]]);
+            }
+            for (int v = 0; v < sorted[inst.nodeNum - 1]; ++v) {
+                int above = 0;
+                for (int m : expected) if (m > v) ++above;
+                assertEquals(above, solver.crossRank[v], "crossRank[" + v + "]");
+            }
+        }
+    }
+
+    @Test
+    void thePerturbationMatchesAFullRecount() throws IOException {
+        Instance inst = Instance.load("Rome/rome.49.62.58.txt");
+        for (float strength : new float[]{0.1f, 0.5f, 1f}) {
+            MMACSolver solver = solver(inst, 1, 1);
+            // the snapshots check the crossings, allNodes and the critical set against a full recount
+            solver.setDEBUG(true);
+            solver.init();
+            for (int k = 0; k < 30; ++k) {
+                solver.randomShufflePerturb(strength);
+                MMACSolver.Solution sol = new MMACSolver.Solution(solver);
+                int[] maxCross = solver.nodeMaxCross.clone();
+                assertArrayEquals(maxCross(inst, solver), maxCross);
+                solver.initM();
+                assertArrayEquals(solver.nodeMaxCross, maxCross, "strength " + strength);
+                assertEquals(solver.nodeMaxCross[solver.allNodes[0]], sol.getM());
+            }
+        }
+    }
+
+    @Test
+    void theBitsetSwapDeltaMatchesThePairwiseCount() throws IOException {
+        // layers of 70 and 130 nodes take 2 and 3 words of bitsets, and every node is dense enough for the kernel
+        for (int size : new int[]{70, 130}) {
+            Instance inst = Instance.load(
+                    TestInstances.writeSimple(dir, "d" + size + ".txt", new int[]{12, size, 12}, 0.3, size).toString());
+            // the kernel is only used without multi-edges
+            assertFalse(inst.multiEdges);
+            MMACSolver solver = solver(inst, 2, 1);
+            solver.init();
+            MMACSolver.MoveEvaluator ev = solver.evaluator;
+            int checked = 0;
+            for (int[] layer : solver.layers) {
+                for (int p = 0; p + 1 < layer.length; ++p) {
+                    int node = layer[p];
+                    int next = layer[p + 1];
+                    int[] before = CrossingCounterTest.bruteForce(inst, solver.nodePos);
+                    ev.resetTmpCross(layer, p, p + 1);
+                    ev.calcSwapDelta(node, next, p, p + 1, p + 1, p, 0);
+                    int[] swapped = solver.nodePos.clone();
+                    swapped[node] = p + 1;
+                    swapped[next] = p;
+                    int[] after = CrossingCounterTest.bruteForce(inst, swapped);
+                    for (int e = 0; e < inst.edgeNum; ++e) {
+                        int source = inst.edgeSource[e];
+                        int sink = inst.edgeSink[e];
+                        if (source == node || source == next || sink == node || sink == next) {
+                            assertEquals(after[e] - before[e], ev.tmpDeltaCross[e], "edge " + e);
+                            ++checked;
+                        }
+                    }
+                }
+            }
+            assertTrue(checked > 1000);
+        }
+    }
+
+    @Test
+    void theBlockMoveCrossingsMatchAFullRecount() throws IOException {
+        Instance inst = Instance.load(TestInstances.write(dir, "b.txt", new int[]{7, 11, 9, 10}, 60, 4).toString());
+        MMACSolver solver = solver(inst, 6, 1);
+        solver.init();
+        MMACSolver.MoveEvaluator ev = solver.evaluator;
+        MMACSolver.Move move = solver.new Move(-1, -1, Integer.MAX_VALUE);
+        int checked = 0;
+        for (int[] layer : solver.layers) {
+            for (int size = 2; size <= 3; ++size) {
+                for (int first = 0; first + size <= layer.length; ++first) {
+                    // the walk stops at the bound, so the tentative crossings are the ones of the block moved there
+                    for (int to = 0; to + size <= layer.length; ++to) {
+                        if (to == first) continue;
+                        int lb = Math.min(to, first);
+                        int ub = Math.max(to, first) + size - 1;
+                        if (to < first) {
+                            ev.tryBlockNeg(layer[first], size, to, 0, move);
+                        } else {
+                            ev.tryBlockPos(layer[first], size, ub, 0, move);
+                        }
+                        int[] moved = solver.nodePos.clone();
+                        for (int p = lb; p <= ub; ++p) {
+                            int q = p >= first && p < first + size ? p - first + to
+                                    : to < first ? p + size : p - size;
+                            moved[layer[p]] = q;
+                        }
+                        int[] after = CrossingCounterTest.bruteForce(inst, moved);
+                        for (int e = 0; e < inst.edgeNum; ++e) {
+                            int source = inst.edgeSource[e];
+                            int sink = inst.edgeSink[e];
+                            if (solver.nodeLayer[source] == solver.nodeLayer[layer[0]]
+                                    ? solver.nodePos[source] >= lb && solver.nodePos[source] <= ub
+                                    : solver.nodeLayer[sink] == solver.nodeLayer[layer[0]]
+                                    && solver.nodePos[sink] >= lb && solver.nodePos[sink] <= ub) {
+                                assertEquals(after[e], ev.tmpCross[e], "edge " + e);
+                                ++checked;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        assertTrue(checked > 1000);
+    }
+
+    /***
+     * One local search step as in the localSearchIteration benchmark: find the best move, make it and undo it
+     */
+    private static void step(MMACSolver solver, MMACSolver.Move undo) {
+        MMACSolver.Move mv = solver.findMove();
+        if (mv.node >= 0) {
+            undo.set(mv.node, solver.nodePos[mv.node], 0);
+            solver.makeMove(mv);
+            solver.makeMove(undo);
+        }
+    }
+
+    @Test
+    void theLocalSearchStepDoesNotAllocate() throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        long thread = Thread.currentThread().getId();
+        for (String file : new String[]{"Rome/rome.49.62.58.txt", "connected/c1000_5000_25_2_1.txt"}) {
+            MMACSolver solver = solver(Instance.load(file), 0, 1);
+            solver.init();
+            MMACSolver.Move undo = solver.new Move(-1, -1, 0);
+            for (int k = 0; k < 200; ++k) step(solver, undo);
+
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int k = 0; k < 1000; ++k) step(solver, undo);
+            long allocated = threads.getThreadAllocatedBytes(thread) - before;
+            // a single Move or int[] per step would be at least 16 kB
+            assertTrue(allocated < 1024, file + ": " + allocated + " bytes allocated by 1000 steps");
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package mmac;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultiStartRunnerTest {
+
+    @Test
+    void aFailedRunCancelsTheOthers() throws IOException {
+        Instance inst = Instance.load("Rome/rome.49.62.58.txt");
+        SolverOptions options = new SolverOptions();
+        options.setTIME_LIMIT(60);
+        options.setTARGET_M(-1);
+        MultiStartRunner runner = new MultiStartRunner(3);
+        runner.setOptions(options);
+        AtomicBoolean thrown = new AtomicBoolean();
+        Map<MMACSolver, MMACSolver.StopReason> reasons = new ConcurrentHashMap<>();
+        runner.addListener(new SolverListener() {
+            @Override
+            public void onPerturbation(MMACSolver solver, int perturbations) {
+                if (perturbations == 20 && thrown.compareAndSet(false, true)) {
+                    throw new IllegalStateException("failed run");
+                }
+            }
+
+            @Override
+            public void onTermination(MMACSolver solver, MMACSolver.Solution best, MMACSolver.StopReason reason) {
+                reasons.put(solver, reason);
+            }
+        });
+
+        long start = System.nanoTime();
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> runner.run(inst, 4));
+        assertEquals("failed run", e.getMessage());
+        assertTrue(System.nanoTime() - start < 30e9, "the other runs were not cancelled");
+        // the failed run does not terminate, the 2 others were cancelled, and the last one either never started
+        // or started on the thread of the failed run and cancelled itself
+        assertTrue(reasons.size() == 2 || reasons.size() == 3, reasons.toString());
+        for (MMACSolver.StopReason reason : reasons.values()) {
+            assertEquals(MMACSolver.StopReason.CANCELLED, reason);
+        }
+    }
+}
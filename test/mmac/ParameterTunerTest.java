@@ -0,0 +1,110 @@
+package mmac;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParameterTunerTest {
+
+    @Test
+    void chiSquareMatchesTheTables() {
+        // the 0.95 quantiles of the chi-square distribution with 1, 2, 5 and 10 degrees of freedom
+        assertEquals(0.05, ParameterTuner.chiSquareUpperTail(3.841, 1), 1e-4);
+        assertEquals(0.05, ParameterTuner.chiSquareUpperTail(5.991, 2), 1e-4);
+        assertEquals(0.05, ParameterTuner.chiSquareUpperTail(11.070, 5), 1e-4);
+        assertEquals(0.05, ParameterTuner.chiSquareUpperTail(18.307, 10), 1e-4);
+        // and the 0.99 quantile with 20
+        assertEquals(0.01, ParameterTuner.chiSquareUpperTail(37.566, 20), 1e-4);
+        // with 2 degrees of freedom the tail is exp(-x / 2)
+        assertEquals(Math.exp(-4.2), ParameterTuner.chiSquareUpperTail(8.4, 2), 1e-12);
+        assertEquals(1, ParameterTuner.chiSquareUpperTail(0, 3), 0);
+    }
+
+    @Test
+    void studentQuantilesMatchTheTables() {
+        assertEquals(12.706, ParameterTuner.studentQuantile(0.975, 1), 1e-3);
+        assertEquals(2.306, ParameterTuner.studentQuantile(0.975, 8), 1e-3);
+        assertEquals(2.228, ParameterTuner.studentQuantile(0.975, 10), 1e-3);
+        assertEquals(2.042, ParameterTuner.studentQuantile(0.975, 30), 1e-3);
+        assertEquals(1.812, ParameterTuner.studentQuantile(0.95, 10), 1e-3);
+        assertEquals(2.576, ParameterTuner.studentQuantile(0.995, 100000), 1e-3);
+    }
+
+    @Test
+    void ranksAverageTies() {
+        assertArrayEquals(new double[]{4.5, 2.5, 4.5, 1, 2.5}, ParameterTuner.ranks(new int[]{5, 3, 5, 1, 3}));
+    }
+
+    @Test
+    void friedmanStatisticWithoutTies() {
+        // the classical 12 / (n k (k + 1)) sum R^2 - 3 n (k + 1)
+        assertEquals(8, ParameterTuner.friedmanStatistic(blocks(new int[]{1, 2, 3}, 4), 3), 1e-12);
+        List<double[]> blocks = blocks(new int[]{1, 2, 3}, 1);
+        blocks.add(new double[]{1, 3, 2});
+        blocks.add(new double[]{2, 1, 3});
+        assertEquals(8.0 / 3, ParameterTuner.friedmanStatistic(blocks, 3), 1e-12);
+        assertTrue(Double.isNaN(ParameterTuner.friedmanStatistic(blocks(new int[]{5, 5, 5}, 6), 3)));
+    }
+
+    @Test
+    void conoverDropsOnlyTheConfigurationsBeyondTheCriticalDifference() {
+        // rank sums 6, 9 and 15 over 5 blocks: T1 = 8.4 (p = 0.015) and the critical difference
+        // is t(0.975, 8) sqrt(2 (5 * 70 - 342) / 8) = 2.306 * sqrt(2) = 3.26
+        List<double[]> blocks = blocks(new int[]{1, 2, 3}, 4);
+        blocks.add(new double[]{2, 1, 3});
+        assertEquals(8.4, ParameterTuner.friedmanStatistic(blocks, 3), 1e-12);
+        assertArrayEquals(new boolean[]{false, false, true}, ParameterTuner.eliminate(blocks, 3, 0.05));
+        // not significant at 0.01
+        assertNull(ParameterTuner.eliminate(blocks, 3, 0.01));
+        // complete ties never drop anything
+        assertNull(ParameterTuner.eliminate(blocks(new int[]{1, 1, 1}, 10), 3, 0.05));
+    }
+
+    @Test
+    void familiesAreTheDirectories() {
+        assertEquals("North", ParameterTuner.familyOf("North/north.40.131.15.txt"));
+        assertEquals("connected", ParameterTuner.familyOf("./instances/connected/c1000.txt"));
+    }
+
+    private static List<double[]> blocks(int[] ms, int n) {
+        List<double[]> blocks = new ArrayList<>();
+        for (int b = 0; b < n; ++b) {
+            blocks.add(ParameterTuner.ranks(Arrays.copyOf(ms, ms.length)));
+        }
+        return blocks;
+    }
+
+    @Test
+    void anInterruptedRaceCancelsItsRuns() throws InterruptedException {
+        SolverOptions options = new SolverOptions();
+        options.setTIME_LIMIT(60);
+        options.setTARGET_M(-1);
+        ParameterTuner tuner = new ParameterTuner(2);
+        tuner.setOptions(options);
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread caller = new Thread(() -> {
+            try {
+                tuner.run(Arrays.asList("Rome/rome.49.62.58.txt"));
+            } catch (Throwable t) {
+                thrown.set(t);
+            }
+        });
+        caller.start();
+        Thread.sleep(500);
+        caller.interrupt();
+        caller.join(30000);
+        assertFalse(caller.isAlive(), "the race runs were not cancelled");
+        assertTrue(thrown.get() instanceof IOException, String.valueOf(thrown.get()));
+        for (StackTraceElement[] stack : Thread.getAllStackTraces().values()) {
+            for (StackTraceElement frame : stack) {
+                assertNotEquals(MMACSolver.class.getName(), frame.getClassName(), "a run outlived the race");
+            }
+        }
+    }
+}
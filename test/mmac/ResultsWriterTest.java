@@ -0,0 +1,94 @@
+package mmac;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultsWriterTest {
+
+    @TempDir
+    Path dir;
+
+    private List<MMACSolver.Solution> solve(Instance inst, int runs) throws IOException {
+        List<MMACSolver.Solution> sols = new ArrayList<>();
+        for (int seed = 0; seed < runs; ++seed) {
+            MMACSolver solver = new MMACSolver(inst, seed);
+            solver.setVERBOSE(false);
+            solver.setTARGET_M(-1);
+            solver.setMAX_ITERATIONS(100);
+            solver.solve();
+            sols.add(solver.getBestSol());
+        }
+        return sols;
+    }
+
+    @Test
+    void concurrentRunsWriteWholeRowsAndSolutions() throws Exception {
+        Instance inst = Instance.load(TestInstances.write(dir, "r.txt", new int[]{5, 7, 6, 4}, 20, 3).toString());
+        List<MMACSolver.Solution> sols = solve(inst, 8);
+        Path solutions = Files.createDirectory(dir.resolve("solutions"));
+        Path csv = dir.resolve("results.csv");
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try (ResultsWriter writer = new ResultsWriter(csv.toString())) {
+            writer.setSolutionDir(solutions.toString(), true);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int seed = 0; seed < sols.size(); ++seed) {
+                final int s = seed;
+                futures.add(pool.submit(() -> {
+                    writer.write("r.txt", s, sols.get(s));
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+        assertEquals(sols.size() + 1, lines.size());
+        assertEquals("instance,seed,M,time,iterations,evaluations,perturbations", lines.get(0));
+        boolean[] seen = new boolean[sols.size()];
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split(",");
+            assertEquals(7, fields.length, line);
+            int seed = Integer.parseInt(fields[1]);
+            assertFalse(seen[seed]);
+            seen[seed] = true;
+            MMACSolver.Solution sol = sols.get(seed);
+            assertEquals(sol.getM(), Integer.parseInt(fields[2]));
+
+            File file = new File(solutions.toFile(), "r.txt_sol_seed" + seed + "_res" + sol.getM() + ".txt.gz");
+            assertArrayEquals(sol.getLayers(), ResultsWriter.readLayers(file.toString()));
+        }
+    }
+
+    @Test
+    void solutionsOnly() throws IOException {
+        Instance inst = Instance.load(TestInstances.write(dir, "r.txt", new int[]{4, 5, 4}, 10, 1).toString());
+        MMACSolver.Solution sol = solve(inst, 1).get(0);
+        Path solutions = Files.createDirectory(dir.resolve("solutions"));
+        try (ResultsWriter writer = new ResultsWriter()) {
+            writer.setSolutionDir(solutions.toString(), false);
+            writer.write("r.txt", 0, sol);
+        }
+        File file = new File(solutions.toFile(), "r.txt_sol_seed0_res" + sol.getM() + ".txt");
+        assertArrayEquals(sol.getLayers(), ResultsWriter.readLayers(file.toString()));
+        assertEquals(1, solutions.toFile().list().length);
+        assertFalse(new File("results.csv").exists());
+    }
+}
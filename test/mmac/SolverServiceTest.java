@@ -0,0 +1,91 @@
+package mmac;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SolverServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private List<Map<?, ?>> serve(String... requests) {
+        SolverService service = new SolverService(1, 4);
+        List<String> lines = Collections.synchronizedList(new ArrayList<>());
+        for (String request : requests) {
+            service.handle(request, lines::add);
+        }
+        service.shutdown();
+        List<Map<?, ?>> responses = new ArrayList<>();
+        for (String line : lines) {
+            responses.add((Map<?, ?>) Json.parse(line));
+        }
+        return responses;
+    }
+
+    private String instance() throws IOException {
+        return Json.quote(TestInstances.write(dir, "s.txt", new int[]{4, 6, 5}, 12, 4).toString());
+    }
+
+    @Test
+    void echoesTheIdWithItsType() throws IOException {
+        String file = instance();
+        List<String> lines = new ArrayList<>();
+        SolverService service = new SolverService(1, 4);
+        service.handle("{\"id\": 7, \"instance\": " + file + ", \"iterations\": 20}", lines::add);
+        service.handle("{\"id\": \"7\", \"instance\": " + file + ", \"iterations\": 20}", lines::add);
+        service.shutdown();
+        assertEquals(2, lines.size());
+        assertTrue(lines.stream().anyMatch(l -> l.startsWith("{\"id\": 7,")), lines.toString());
+        assertTrue(lines.stream().anyMatch(l -> l.startsWith("{\"id\": \"7\",")), lines.toString());
+        for (String line : lines) {
+            assertNotNull(((Map<?, ?>) Json.parse(line)).get("M"), line);
+        }
+    }
+
+    @Test
+    void rejectsFieldsThatDoNotConvert() throws IOException {
+        String file = instance();
+        String[] fields = {"\"seed\": 1e12", "\"seed\": 1.5", "\"iterations\": -1", "\"target\": \"3\"",
+                "\"evaluations\": 1e300", "\"time\": -2", "\"perturb\": 2", "\"cache\": 1",
+                "\"layers\": [[1.5]]", "\"eval\": 0"};
+        for (int i = 0; i < fields.length; ++i) {
+            List<Map<?, ?>> responses = serve("{\"id\": " + i + ", \"instance\": " + file + ", " + fields[i] + "}");
+            assertEquals(1, responses.size());
+            assertEquals((double) i, responses.get(0).get("id"));
+            assertNotNull(responses.get(0).get("error"), fields[i]);
+        }
+        assertNotNull(serve("{\"id\": true, \"instance\": " + file + "}").get(0).get("error"));
+        assertNotNull(serve("{\"instance\": " + file + "}").get(0).get("error"));
+    }
+
+    @Test
+    void aCancelledQueuedRequestIsAnsweredRightAway() {
+        String file = Json.quote("Rome/rome.49.62.58.txt");
+        List<Map<?, ?>> responses = Collections.synchronizedList(new ArrayList<>());
+        SolverService service = new SolverService(1, 4);
+        long start = System.nanoTime();
+        service.handle("{\"id\": 1, \"instance\": " + file + ", \"time\": 1, \"seed\": 1}",
+                line -> responses.add((Map<?, ?>) Json.parse(line)));
+        service.handle("{\"id\": 2, \"instance\": " + file + ", \"time\": 60}",
+                line -> responses.add((Map<?, ?>) Json.parse(line)));
+        service.handle("{\"id\": 2, \"cancel\": true}", line -> fail(line));
+        service.shutdown();
+        assertTrue(System.nanoTime() - start < 30e9, "the queued request was not cancelled");
+        assertEquals(2, responses.size());
+        Map<?, ?> cancelled = responses.get(1);
+        assertEquals(2.0, cancelled.get("id"));
+        assertNotNull(cancelled.get("layers"));
+        // it stops after its first local search, unless that already reached the target
+        assertTrue("CANCELLED".equals(cancelled.get("stop")) || "TARGET".equals(cancelled.get("stop")),
+                cancelled.toString());
+    }
+}
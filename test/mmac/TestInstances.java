@@ -0,0 +1,97 @@
+package mmac;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/***
+ * Random layered instances written in the text format, for the tests
+ */
+final class TestInstances {
+
+    private TestInstances() {
+    }
+
+    /***
+     * Write a random instance whose arcs all join consecutive layers and that has no isolated node:
+     * the first arcs between two layers join their k-th nodes (modulo their sizes), the others are random
+     * @param sizes the number of nodes of every layer
+     * @param arcsPerLayer the number of arcs between two consecutive layers, duplicates included,
+     * raised to the size of the larger layer if it is smaller
+     * @return the path of the file
+     */
+    static Path write(Path dir, String name, int[] sizes, int arcsPerLayer, long seed) throws IOException {
+        Random random = new Random(seed);
+        int[] first = new int[sizes.length + 1];
+        for (int l = 0; l < sizes.length; ++l) {
+            first[l + 1] = first[l] + sizes[l];
+        }
+        int arcs = 0;
+        for (int l = 0; l + 1 < sizes.length; ++l) {
+            arcs += arcs(sizes, l, arcsPerLayer);
+        }
+        Path file = dir.resolve(name);
+        try (Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            w.write(first[sizes.length] + " " + arcs + " " + sizes.length + "\n");
+            for (int size : sizes) {
+                w.write(size + " ");
+            }
+            w.write("\n");
+            for (int l = 0; l + 1 < sizes.length; ++l) {
+                int cover = Math.max(sizes[l], sizes[l + 1]);
+                for (int a = 0; a < arcs(sizes, l, arcsPerLayer); ++a) {
+                    int source = first[l] + (a < cover ? a % sizes[l] : random.nextInt(sizes[l])) + 1;
+                    int sink = first[l + 1] + (a < cover ? a % sizes[l + 1] : random.nextInt(sizes[l + 1])) + 1;
+                    w.write(source + "\t" + sink + "\n");
+                }
+            }
+        }
+        return file;
+    }
+
+    /***
+     * Write a random instance without duplicate arcs, whose arcs all join consecutive layers: the k-th nodes
+     * (modulo the layer sizes) are joined so that no node is isolated, and every other pair with probability density
+     * @return the path of the file
+     */
+    static Path writeSimple(Path dir, String name, int[] sizes, double density, long seed) throws IOException {
+        Random random = new Random(seed);
+        int first = 0;
+        StringBuilder arcs = new StringBuilder();
+        int arcCount = 0;
+        for (int l = 0; l + 1 < sizes.length; ++l) {
+            int next = first + sizes[l];
+            int cover = Math.max(sizes[l], sizes[l + 1]);
+            for (int u = 0; u < sizes[l]; ++u) {
+                for (int v = 0; v < sizes[l + 1]; ++v) {
+                    boolean covering = false;
+                    for (int k = u; k < cover && !covering; k += sizes[l]) {
+                        covering = k % sizes[l + 1] == v;
+                    }
+                    if (covering || random.nextDouble() < density) {
+                        arcs.append(first + u + 1).append('\t').append(next + v + 1).append('\n');
+                        ++arcCount;
+                    }
+                }
+            }
+            first = next;
+        }
+        Path file = dir.resolve(name);
+        try (Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            w.write(first + sizes[sizes.length - 1] + " " + arcCount + " " + sizes.length + "\n");
+            for (int size : sizes) {
+                w.write(size + " ");
+            }
+            w.write("\n");
+            w.write(arcs.toString());
+        }
+        return file;
+    }
+
+    private static int arcs(int[] sizes, int l, int arcsPerLayer) {
+        return Math.max(arcsPerLayer, Math.max(sizes[l], sizes[l + 1]));
+    }
+}